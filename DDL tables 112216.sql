@@ -25,6 +25,15 @@ DROP TABLE tags cascade;
 DROP TABLE users cascade;
 DROP TABLE tag_bug_xref cascade;
 Drop Table user_tag_subscription cascade;
+-- tables and functions added by the migrations in bug-tracker/src/main/resources/db/migration;
+-- the web app reapplies them at startup
+DROP TABLE user_feed cascade;
+DROP TABLE milestone_counts cascade;
+DROP TABLE schema_version cascade;
+DROP FUNCTION init_milestone_counts() cascade;
+DROP FUNCTION maintain_milestone_counts() cascade;
+DROP FUNCTION bump_row_version() cascade;
+DROP FUNCTION touch_bug_milestones() cascade;
 
 CREATE TABLE bugs
 (
@@ -0,0 +1,27 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import edu.boisestate.cs410.bugtracker.web.CsrfTokens;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating a session CSRF token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsrfTokenBenchmark {
+    @Benchmark
+    public String newToken() {
+        return CsrfTokens.newToken();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String newTokenContended() {
+        return CsrfTokens.newToken();
+    }
+}
@@ -0,0 +1,154 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import edu.boisestate.cs410.bugtracker.web.MigrationRunner;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Loads the bug tracker schema and fills it with a synthetic dataset.
+ *
+ * Every generated user has the password {@value #PASSWORD}, and user {@code i} is
+ * named {@code user<i>}.  Rows are generated set-wise on the server with
+ * {@code generate_series}, so large datasets load in seconds.
+ */
+public class DataGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DataGenerator.class);
+    public static final String PASSWORD = "password";
+
+    private int users = 1000;
+    private int bugs = 100000;
+    private int tags = 200;
+    private int tagFanout = 3;
+    private int milestones = 20;
+    private int subscriptions = 5;
+
+    public DataGenerator users(int n) {
+        users = n;
+        return this;
+    }
+
+    public DataGenerator bugs(int n) {
+        bugs = n;
+        return this;
+    }
+
+    public DataGenerator tags(int n) {
+        tags = n;
+        return this;
+    }
+
+    public DataGenerator tagFanout(int n) {
+        tagFanout = n;
+        return this;
+    }
+
+    public DataGenerator milestones(int n) {
+        milestones = n;
+        return this;
+    }
+
+    public DataGenerator subscriptions(int n) {
+        subscriptions = n;
+        return this;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getBugs() {
+        return bugs;
+    }
+
+    public int getTags() {
+        return tags;
+    }
+
+    /**
+     * Drop and recreate the baseline schema from a DDL script.  Statements that fail (such
+     * as dropping tables that do not exist yet) are logged and skipped.  Run the
+     * migrations afterwards to bring the schema up to date.
+     */
+    public void loadSchema(Connection cxn, Path ddl) throws IOException {
+        String script = new String(Files.readAllBytes(ddl), StandardCharsets.UTF_8);
+        for (String stmt : MigrationRunner.splitStatements(script)) {
+            try (Statement s = cxn.createStatement()) {
+                s.execute(stmt);
+            } catch (SQLException ex) {
+                logger.debug("skipping failed schema statement: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Fill a freshly loaded and migrated schema with synthetic data.
+     */
+    public void generate(Connection cxn) throws SQLException {
+        long start = System.nanoTime();
+        // one hash for everybody; hashing per user would dominate the load time
+        String hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(10));
+
+        update(cxn, "INSERT INTO users (user_name, user_email, user_password, display_name)\n" +
+                "SELECT 'user' || i, 'user' || i || '@example.com', ?, 'User ' || i\n" +
+                "  FROM generate_series(1, ?) i", hash, users);
+        update(cxn, "INSERT INTO tags (tag) SELECT 'tag' || i FROM generate_series(1, ?) i", tags);
+        update(cxn, "INSERT INTO milestones (milestone_name, milestone_description)\n" +
+                "SELECT 'Milestone ' || i, 'Synthetic milestone ' || i FROM generate_series(1, ?) i", milestones);
+        update(cxn, "INSERT INTO bugs (bug_title, bug_body, bug_status, create_date, close_date, user_id, milestone_id)\n" +
+                "SELECT 'Synthetic bug ' || i || ' in ' || (ARRAY['parser', 'login', 'search', 'render', 'export'])[1 + i % 5],\n" +
+                "       'Steps to reproduce synthetic bug ' || i || ': open the page and watch it crash',\n" +
+                "       CASE WHEN i % 4 = 0 THEN 'closed' ELSE 'open' END,\n" +
+                "       current_date - (i % 1000),\n" +
+                "       CASE WHEN i % 4 = 0 THEN current_date ELSE NULL END,\n" +
+                "       1 + i % ?,\n" +
+                "       CASE WHEN i % 3 = 0 THEN NULL ELSE 1 + i % ? END\n" +
+                "  FROM generate_series(1, ?) i", users, milestones, bugs);
+        update(cxn, "INSERT INTO tag_bug_xref (tag_id, bug_id)\n" +
+                "SELECT DISTINCT 1 + (b.bug_id * 7919 + k * 104729) % ?, b.bug_id\n" +
+                "  FROM bugs b, generate_series(0, ? - 1) k", tags, tagFanout);
+        update(cxn, "INSERT INTO user_tag_subscription (user_id, tag_id)\n" +
+                "SELECT DISTINCT u.user_id, 1 + (u.user_id * 31 + k * 17) % ?\n" +
+                "  FROM users u, generate_series(0, ? - 1) k", tags, subscriptions);
+        update(cxn, "INSERT INTO user_feed (user_id, bug_id, create_date)\n" +
+                "SELECT DISTINCT s.user_id, b.bug_id, b.create_date\n" +
+                "  FROM user_tag_subscription s\n" +
+                "  JOIN tag_bug_xref x ON x.tag_id = s.tag_id\n" +
+                "  JOIN bugs b ON b.bug_id = x.bug_id");
+        update(cxn, "UPDATE bugs\n" +
+                "   SET search_vector = setweight(to_tsvector('english', bug_title), 'A') ||\n" +
+                "                       setweight(to_tsvector('english', coalesce(t.tags, '')), 'B') ||\n" +
+                "                       setweight(to_tsvector('english', bug_body), 'C')\n" +
+                "  FROM (SELECT aa.bug_id, string_agg(cc.tag, ' ') AS tags\n" +
+                "          FROM bugs aa\n" +
+                "          LEFT JOIN tag_bug_xref bb ON bb.bug_id = aa.bug_id\n" +
+                "          LEFT JOIN tags cc ON cc.tag_id = bb.tag_id\n" +
+                "         GROUP BY aa.bug_id) t\n" +
+                " WHERE t.bug_id = bugs.bug_id");
+        try (Statement stmt = cxn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+        logger.info("generated {} users, {} bugs, {} tags (fan-out {}), {} milestones, {} subscriptions/user in {} ms",
+                    users, bugs, tags, tagFanout, milestones, subscriptions,
+                    (System.nanoTime() - start) / 1000000);
+    }
+
+    private static void update(Connection cxn, String sql, Object... params) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            int rows = stmt.executeUpdate();
+            logger.debug("{} rows: {}", rows, sql.split("\n")[0]);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An in-memory bug query result, so row mapping can be measured without a database.
+ */
+public class FakeResultSet {
+    private static final String[] COLUMNS = {
+            "bug_id", "bug_title", "bug_body", "bug_status",
+            "create_date", "close_date", "user_id", "milestone_id"
+    };
+
+    private FakeResultSet() {
+    }
+
+    /**
+     * Create the rows a full bug query would return.
+     * @param count The number of rows.
+     */
+    public static Object[][] bugRows(int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Object[]{
+                    i + 1, "Bug number " + (i + 1), "Steps to reproduce bug " + (i + 1), "open",
+                    Date.valueOf("2016-11-22"), null, (i % 50) + 1, (i % 7) + 1
+            };
+        }
+        return rows;
+    }
+
+    /**
+     * Open a result set over rows from {@link #bugRows}.  It supports {@code next},
+     * {@code close}, {@code getMetaData}, {@code wasNull}, {@code findColumn} and the
+     * {@code getInt}/{@code getString}/{@code getDate}/{@code getObject} getters.
+     */
+    public static ResultSet open(Object[][] rows) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            index.put(COLUMNS[i], i);
+        }
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(
+                ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getColumnCount":
+                return COLUMNS.length;
+            case "getColumnLabel":
+            case "getColumnName":
+                return COLUMNS[(Integer) args[0] - 1];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                                                  (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "next":
+                cursor[0] += 1;
+                return cursor[0] < rows.length;
+            case "close":
+                return null;
+            case "getMetaData":
+                return meta;
+            case "wasNull":
+                return wasNull[0];
+            case "findColumn":
+                return index.get(args[0]) + 1;
+            case "getInt":
+            case "getString":
+            case "getDate":
+            case "getObject":
+                int col = args[0] instanceof String ? index.get(args[0]) : (Integer) args[0] - 1;
+                Object value = rows[cursor[0]][col];
+                wasNull[0] = value == null;
+                if (method.getName().equals("getInt")) {
+                    return value == null ? 0 : ((Number) value).intValue();
+                } else if (method.getName().equals("getString")) {
+                    return value == null ? null : value.toString();
+                } else {
+                    return value;
+                }
+            default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
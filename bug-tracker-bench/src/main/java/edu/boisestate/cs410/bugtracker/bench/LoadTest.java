@@ -0,0 +1,352 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import edu.boisestate.cs410.bugtracker.web.LatencyHistogram;
+import edu.boisestate.cs410.bugtracker.web.MigrationRunner;
+import edu.boisestate.cs410.bugtracker.web.Settings;
+import edu.boisestate.cs410.bugtracker.web.WebMain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test: loads a synthetic dataset, starts the web app and drives a
+ * mixed workload at a fixed arrival rate.
+ *
+ * Usage: {@code LoadTest postgresql://user:pw@localhost/bugtracker_load [--option=value ...]}
+ * <ul>
+ *     <li>{@code --schema=FILE} DDL script to load (default {@code ../DDL tables 112216.sql})</li>
+ *     <li>{@code --skipLoad} reuse the existing data instead of regenerating it</li>
+ *     <li>{@code --users, --bugs, --tags, --tagFanout, --milestones, --subscriptions} dataset shape</li>
+ *     <li>{@code --external=URL} drive an already running server instead of starting one</li>
+ *     <li>{@code --rate} requests per second, {@code --duration} seconds, {@code --warmup} seconds</li>
+ *     <li>{@code --sessions} logged-in sessions to spread requests over</li>
+ *     <li>{@code --maxInFlight} concurrent requests before arrivals are dropped</li>
+ *     <li>{@code --mix} operation weights, e.g. {@code login=5,home=30,buglist=20,search=15,bug=25,create=5}</li>
+ * </ul>
+ *
+ * Latency is measured from each request's scheduled start time, so a stalled server
+ * shows up in the latency distribution rather than as a lower request rate.
+ *
+ * The target database is wiped, so point this at a scratch database.
+ */
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+    private static final String[] SEARCH_TERMS = {"parser", "login", "search", "render", "export", "crash"};
+    private static final List<String> OPERATIONS = Arrays.asList("login", "home", "buglist", "search", "bug", "create");
+
+    private final String baseUrl;
+    private final int users;
+    private final int bugs;
+    private final int tags;
+    private final AtomicReferenceArray<String> sessions;
+    private final Map<String, Integer> mix = new LinkedHashMap<>();
+    private final Map<String, OpStats> stats = new LinkedHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    LoadTest(String baseUrl, DataGenerator data, int sessionCount, String mixSpec) {
+        this.baseUrl = baseUrl;
+        users = data.getUsers();
+        bugs = data.getBugs();
+        tags = data.getTags();
+        sessions = new AtomicReferenceArray<>(sessionCount);
+        int total = 0;
+        for (String part : mixSpec.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("bad mix entry " + part + ", expected op=weight");
+            }
+            String op = kv[0].trim();
+            if (!OPERATIONS.contains(op)) {
+                throw new IllegalArgumentException("unknown operation " + op + " in mix, expected one of " + OPERATIONS);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight for " + op);
+            }
+            mix.put(op, weight);
+            stats.put(op, new OpStats());
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("the operation mix has no weight");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        if (settings.getArguments().isEmpty()) {
+            throw new IllegalArgumentException("no database URI specified");
+        }
+        String dbUri = settings.getArguments().get(0);
+
+        DataGenerator data = new DataGenerator()
+                .users(settings.getInt("users", 1000))
+                .bugs(settings.getInt("bugs", 100000))
+                .tags(settings.getInt("tags", 200))
+                .tagFanout(settings.getInt("tagFanout", 3))
+                .milestones(settings.getInt("milestones", 20))
+                .subscriptions(settings.getInt("subscriptions", 5));
+        if (!settings.getBoolean("skipLoad", false)) {
+            try (Connection cxn = WebMain.connect(dbUri)) {
+                data.loadSchema(cxn, Paths.get(settings.getString("schema", "../DDL tables 112216.sql")));
+                new MigrationRunner().migrate(cxn);
+                data.generate(cxn);
+            }
+        }
+
+        String baseUrl = settings.getString("external", null);
+        if (baseUrl == null) {
+            WebMain.main(new String[]{dbUri});
+            baseUrl = "http://localhost:4567";
+        }
+
+        LoadTest test = new LoadTest(baseUrl, data, settings.getInt("sessions", 50),
+                                     settings.getString("mix", "login=5,home=30,buglist=20,search=15,bug=25,create=5"));
+        test.awaitServer();
+        test.loginAll();
+
+        int rate = settings.getInt("rate", 50);
+        int maxInFlight = settings.getInt("maxInFlight", 200);
+        int warmup = settings.getInt("warmup", 10);
+        if (warmup > 0) {
+            logger.info("warming up for {} s", warmup);
+            test.drive(rate, warmup, maxInFlight);
+            test.reset();
+        }
+        int duration = settings.getInt("duration", 60);
+        logger.info("running at {} req/s for {} s", rate, duration);
+        test.drive(rate, duration, maxInFlight);
+        System.out.print(test.report(duration));
+        System.exit(0);
+    }
+
+    void awaitServer() throws InterruptedException {
+        for (int i = 0; i < 120; i++) {
+            try {
+                if (request("GET", "/", null, null).status == 200) {
+                    return;
+                }
+            } catch (IOException ex) {
+                logger.debug("server not up yet: {}", ex.getMessage());
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("server did not start");
+    }
+
+    void loginAll() throws IOException {
+        for (int i = 0; i < sessions.length(); i++) {
+            sessions.set(i, login());
+        }
+    }
+
+    void reset() {
+        for (OpStats s : stats.values()) {
+            s.reset();
+        }
+        dropped.reset();
+    }
+
+    /**
+     * Issue requests at a fixed rate for a while, then wait for outstanding requests.
+     */
+    void drive(int rate, int seconds, int maxInFlight) throws InterruptedException {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(maxInFlight, maxInFlight, 30, TimeUnit.SECONDS,
+                                                            new SynchronousQueue<>());
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            String op = pickOperation();
+            try {
+                workers.execute(() -> run(op, intended));
+            } catch (RejectedExecutionException ex) {
+                dropped.increment();
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private String pickOperation() {
+        int total = 0;
+        for (int w : mix.values()) {
+            total += w;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<String, Integer> e : mix.entrySet()) {
+            pick -= e.getValue();
+            if (pick < 0) {
+                return e.getKey();
+            }
+        }
+        throw new AssertionError("bad operation mix");
+    }
+
+    private void run(String op, long intended) {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        int slot = rng.nextInt(sessions.length());
+        String session = sessions.get(slot);
+        boolean ok;
+        try {
+            switch (op) {
+            case "login":
+                sessions.set(slot, login());
+                ok = true;
+                break;
+            case "home":
+                ok = request("GET", "/", null, session).ok();
+                break;
+            case "buglist":
+                ok = request("GET", "/buglist", null, session).ok();
+                break;
+            case "search":
+                ok = request("GET", "/searchbug?searchterm=" + SEARCH_TERMS[rng.nextInt(SEARCH_TERMS.length)],
+                             null, session).ok();
+                break;
+            case "bug":
+                ok = request("GET", "/bugs/" + (1 + rng.nextInt(bugs)), null, session).ok();
+                break;
+            case "create":
+                ok = request("POST", "/createbug",
+                             form("bug_title", "Load test bug " + rng.nextInt(),
+                                  "bug_status", "open",
+                                  "bug_body", "Created by the load test harness",
+                                  "bug_tags", "tag" + (1 + rng.nextInt(tags)) + " tag" + (1 + rng.nextInt(tags))),
+                             session).ok();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown operation " + op);
+            }
+        } catch (IOException ex) {
+            logger.debug("{} failed", op, ex);
+            ok = false;
+        }
+        stats.get(op).record(System.nanoTime() - intended, ok);
+    }
+
+    private String login() throws IOException {
+        int user = 1 + ThreadLocalRandom.current().nextInt(users);
+        Result result = request("POST", "/login", form("username", "user" + user, "password", DataGenerator.PASSWORD), null);
+        if (result.status != 303 || result.session == null) {
+            throw new IOException("login failed with status " + result.status);
+        }
+        return result.session;
+    }
+
+    private static String form(String... pairs) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(pairs[i], "UTF-8")).append('=')
+              .append(URLEncoder.encode(pairs[i + 1], "UTF-8"));
+        }
+        return sb.toString();
+    }
+
+    private Result request(String method, String path, String body, String session) throws IOException {
+        HttpURLConnection cxn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        cxn.setInstanceFollowRedirects(false);
+        cxn.setRequestMethod(method);
+        if (session != null) {
+            cxn.setRequestProperty("Cookie", session);
+        }
+        if (body != null) {
+            cxn.setDoOutput(true);
+            cxn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = cxn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = cxn.getResponseCode();
+        InputStream in = status >= 400 ? cxn.getErrorStream() : cxn.getInputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buf = new byte[8192];
+                while (stream.read(buf) >= 0) {
+                    // drain the response so the connection can be reused
+                }
+            }
+        }
+        String cookie = null;
+        List<String> cookies = cxn.getHeaderFields().get("Set-Cookie");
+        if (cookies != null) {
+            for (String c : cookies) {
+                if (c.startsWith("JSESSIONID=")) {
+                    cookie = c.split(";", 2)[0];
+                }
+            }
+        }
+        return new Result(status, cookie != null ? cookie : session);
+    }
+
+    String report(int seconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %8s %8s %9s %9s %9s %9s %9s%n",
+                                "route", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        long total = 0;
+        for (Map.Entry<String, OpStats> e : stats.entrySet()) {
+            LatencyHistogram h = e.getValue().histogram;
+            total += h.getCount();
+            sb.append(String.format("%-10s %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                                    e.getKey(), h.getCount(), e.getValue().errors.sum(),
+                                    h.getCount() / (double) seconds,
+                                    h.quantileMicros(0.5) / 1000.0, h.quantileMicros(0.95) / 1000.0,
+                                    h.quantileMicros(0.99) / 1000.0, h.getMaxMicros() / 1000.0));
+        }
+        sb.append(String.format("total %d requests, %.1f req/s, %d dropped%n",
+                                total, total / (double) seconds, dropped.sum()));
+        return sb.toString();
+    }
+
+    private static class Result {
+        final int status;
+        final String session;
+
+        Result(int status, String session) {
+            this.status = status;
+            this.session = session;
+        }
+
+        boolean ok() {
+            return status < 400;
+        }
+    }
+
+    private static class OpStats {
+        volatile LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean ok) {
+            histogram.record(nanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+
+        void reset() {
+            histogram = new LatencyHistogram();
+            errors.reset();
+        }
+    }
+}
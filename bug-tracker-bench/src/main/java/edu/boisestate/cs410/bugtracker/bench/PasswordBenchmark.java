@@ -0,0 +1,37 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of password checks and hashing at the cost factor the server uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+    @Param({"10"})
+    public int cost;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        hash = BCrypt.hashpw("correct horse battery staple", BCrypt.gensalt(cost));
+    }
+
+    @Benchmark
+    public boolean checkpw() {
+        return BCrypt.checkpw("correct horse battery staple", hash);
+    }
+
+    @Benchmark
+    public String hashpw() {
+        return BCrypt.hashpw("correct horse battery staple", BCrypt.gensalt(cost));
+    }
+}
@@ -0,0 +1,67 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import com.mitchellbosecke.pebble.loader.ClasspathLoader;
+import edu.boisestate.cs410.bugtracker.web.Bug;
+import edu.boisestate.cs410.bugtracker.web.PrecompiledTemplateEngine;
+import edu.boisestate.cs410.bugtracker.web.User;
+import org.openjdk.jmh.annotations.*;
+import spark.ModelAndView;
+
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering the bug list and home pages with Pebble.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int bugs;
+
+    private PrecompiledTemplateEngine engine;
+    private ModelAndView bugList;
+    private ModelAndView index;
+
+    @Setup
+    public void setUp() {
+        engine = new PrecompiledTemplateEngine(new ClasspathLoader(), 64, true);
+        engine.precompile(Arrays.asList("buglist.html", "index.html"));
+
+        User user = new User(1, "bench", "bench@example.com", "Bench User", 0, 0);
+        List<Bug> rows = new ArrayList<>();
+        Date created = Date.valueOf("2016-11-22");
+        List<String> tags = Arrays.asList("backend", "ui");
+        for (int i = 1; i <= bugs; i++) {
+            rows.add(new Bug(i, "Bug number " + i, null, "open", created, null, null, null).withTags(tags));
+        }
+
+        Map<String, Object> listFields = new HashMap<>();
+        listFields.put("user", user);
+        listFields.put("csrf_token", "AAAAAAAAAAA=");
+        listFields.put("bugs", rows);
+        bugList = new ModelAndView(listFields, "buglist.html");
+
+        Map<String, Object> indexFields = new HashMap<>();
+        indexFields.put("user", user);
+        indexFields.put("csrf_token", "AAAAAAAAAAA=");
+        indexFields.put("userBugs", rows);
+        indexFields.put("tagBugs", rows);
+        index = new ModelAndView(indexFields, "index.html");
+    }
+
+    @Benchmark
+    public String renderBugList() {
+        return engine.render(bugList);
+    }
+
+    @Benchmark
+    public String renderIndex() {
+        return engine.render(index);
+    }
+}
@@ -0,0 +1,38 @@
+package edu.boisestate.cs410.bugtracker.bench;
+
+import edu.boisestate.cs410.bugtracker.web.Bug;
+import edu.boisestate.cs410.bugtracker.web.BugRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading bug rows into the {@link Bug}s the handlers render.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int rows;
+
+    private Object[][] data;
+
+    @Setup
+    public void setUp() {
+        data = FakeResultSet.bugRows(rows);
+    }
+
+    @Benchmark
+    public List<Bug> mapBugs() throws SQLException {
+        try (ResultSet rs = FakeResultSet.open(data)) {
+            return BugRepository.readBugs(rs);
+        }
+    }
+}
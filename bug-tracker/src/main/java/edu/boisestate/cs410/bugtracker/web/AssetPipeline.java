@@ -0,0 +1,180 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fingerprints and precompresses the static assets at startup, and serves them.
+ *
+ * Assets live under {@code assets} on the classpath and are listed in its
+ * {@code index.txt}.  Each is served under a name containing a hash of its content,
+ * e.g. {@code /assets/app.1a2b3c4d5e.css}, so it can be cached for a year: a changed
+ * file gets a new URL.  Templates find the current URLs in the {@code assets} map.
+ */
+public class AssetPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AssetPipeline.class);
+    private static final String PREFIX = "/assets/";
+    private static final String CACHE_FOREVER = "public, max-age=31536000, immutable";
+
+    private final String location;
+    private final Map<String, String> urls = new LinkedHashMap<>();
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
+    public AssetPipeline() {
+        this("assets");
+    }
+
+    public AssetPipeline(String location) {
+        this.location = location;
+    }
+
+    /**
+     * Load, fingerprint and compress every asset in the index.
+     */
+    public void load() throws IOException {
+        String index = new String(read(location + "/index.txt"), StandardCharsets.UTF_8);
+        long raw = 0, compressed = 0;
+        for (String line : index.split("\n")) {
+            String name = line.trim();
+            if (name.isEmpty() || name.startsWith("#")) {
+                continue;
+            }
+            byte[] content = read(location + "/" + name);
+            byte[] gzipped = gzip(content);
+            int dot = name.lastIndexOf('.');
+            String hashed = name.substring(0, dot) + "." + fingerprint(content) + name.substring(dot);
+            // tiny files can grow when compressed
+            assets.put(hashed, new Asset(contentType(name), content, gzipped.length < content.length ? gzipped : null));
+            urls.put(name, PREFIX + hashed);
+            raw += content.length;
+            compressed += Math.min(content.length, gzipped.length);
+        }
+        logger.info("loaded {} assets, {} bytes ({} compressed)", assets.size(), raw, compressed);
+    }
+
+    /**
+     * Get the URL of each asset, keyed by its name in the index.
+     */
+    public Map<String, String> getUrls() {
+        return Collections.unmodifiableMap(urls);
+    }
+
+    /**
+     * Serve an asset by its fingerprinted name, compressed if the client accepts it.
+     * The body is written directly, so the route should return an empty string.
+     * @return {@code false} if there is no such asset.
+     */
+    public boolean serve(Request request, Response response, String name) throws IOException {
+        Asset asset = assets.get(name);
+        if (asset == null) {
+            return false;
+        }
+        response.type(asset.contentType);
+        response.header("Cache-Control", CACHE_FOREVER);
+        response.header("Vary", "Accept-Encoding");
+        byte[] body = asset.content;
+        if (asset.gzipped != null && acceptsGzip(request)) {
+            response.header("Content-Encoding", "gzip");
+            body = asset.gzipped;
+        }
+        // write the bytes ourselves so they are not compressed a second time
+        response.raw().setContentLength(body.length);
+        OutputStream out = response.raw().getOutputStream();
+        out.write(body);
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Query whether a request accepts gzip-encoded responses.
+     */
+    public static boolean acceptsGzip(Request request) {
+        String accept = request.headers("Accept-Encoding");
+        return accept != null && accept.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = AssetPipeline.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("missing resource " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // compressed once at startup, so spend the time on the best ratio
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static String fingerprint(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError("SHA-256 is always available", ex);
+        }
+    }
+
+    private static String contentType(String name) {
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        switch (ext) {
+        case "css":
+            return "text/css; charset=utf-8";
+        case "js":
+            return "application/javascript; charset=utf-8";
+        case "svg":
+            return "image/svg+xml";
+        case "png":
+            return "image/png";
+        case "ico":
+            return "image/x-icon";
+        default:
+            return "application/octet-stream";
+        }
+    }
+
+    private static class Asset {
+        final String contentType;
+        final byte[] content;
+        final byte[] gzipped;
+
+        Asset(String contentType, byte[] content, byte[] gzipped) {
+            this.contentType = contentType;
+            this.content = content;
+            this.gzipped = gzipped;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A bug, as the pages render it.  Instances are immutable.
+ *
+ * The getters are named after the columns so that templates can keep using
+ * {@code bug.create_date} and friends.  Queries for list pages leave out the
+ * columns those pages do not show, so {@link #getBody} and the like may be
+ * {@code null} there.
+ */
+public final class Bug {
+    private final int id;
+    private final String title;
+    private final String body;
+    private final String status;
+    private final Date createDate;
+    private final Date closeDate;
+    private final Integer userId;
+    private final Integer milestoneId;
+    private final List<String> tagList;
+
+    public Bug(int id, String title, String body, String status, Date createDate, Date closeDate,
+               Integer userId, Integer milestoneId) {
+        this(id, title, body, status, createDate, closeDate, userId, milestoneId, Collections.emptyList());
+    }
+
+    private Bug(int id, String title, String body, String status, Date createDate, Date closeDate,
+                Integer userId, Integer milestoneId, List<String> tagList) {
+        this.id = id;
+        this.title = title;
+        this.body = body;
+        this.status = status;
+        this.createDate = createDate;
+        this.closeDate = closeDate;
+        this.userId = userId;
+        this.milestoneId = milestoneId;
+        this.tagList = tagList;
+    }
+
+    /**
+     * Get a copy of this bug with its tags filled in.
+     * @param tags The tag names, sorted.
+     */
+    public Bug withTags(List<String> tags) {
+        return new Bug(id, title, body, status, createDate, closeDate, userId, milestoneId,
+                       Collections.unmodifiableList(tags));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Date getCreate_date() {
+        return createDate;
+    }
+
+    /**
+     * Get the date the bug was closed.
+     * @return The date, or {@code null} if the bug is open.
+     */
+    public Date getClose_date() {
+        return closeDate;
+    }
+
+    public Integer getUser_id() {
+        return userId;
+    }
+
+    /**
+     * Get the bug's milestone.
+     * @return The milestone id, or {@code null} if the bug has none.
+     */
+    public Integer getMilestone_id() {
+        return milestoneId;
+    }
+
+    /**
+     * Get the bug's tags, sorted by name.  They are empty unless the bug was loaded with them.
+     */
+    public List<String> getTagList() {
+        return tagList;
+    }
+
+    /**
+     * Get the bug's tags the way the pages display them.
+     */
+    public String getTags() {
+        return TagLoader.joinTags(tagList);
+    }
+}
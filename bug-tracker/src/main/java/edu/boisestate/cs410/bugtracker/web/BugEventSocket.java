@@ -0,0 +1,77 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code /events} WebSocket endpoint.
+ *
+ * Clients connect with {@code ?ticket=} from {@code /events/ticket}, then send
+ * {@code {"subscribe":["bugs","tag:ui"]}} or {@code {"unsubscribe":[...]}}.  Spark
+ * creates this class itself, so it finds its hub through {@link #setHub}.
+ */
+@WebSocket
+public class BugEventSocket {
+    private static volatile EventHub hub;
+
+    static void setHub(EventHub eventHub) {
+        hub = eventHub;
+    }
+
+    @OnWebSocketConnect
+    public void connected(Session session) {
+        List<String> tickets = session.getUpgradeRequest().getParameterMap().get("ticket");
+        Integer userId = hub.redeemTicket(tickets == null || tickets.isEmpty() ? null : tickets.get(0));
+        if (userId == null) {
+            session.close(StatusCode.POLICY_VIOLATION, "invalid ticket");
+            return;
+        }
+        hub.connect(session, userId);
+    }
+
+    @OnWebSocketMessage
+    public void message(Session session, String text) {
+        try {
+            Object parsed = JsonParser.parse(text);
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException("expected an object");
+            }
+            Map<?, ?> request = (Map<?, ?>) parsed;
+            if (request.containsKey("subscribe")) {
+                hub.subscribe(session, topics(request.get("subscribe")));
+            }
+            if (request.containsKey("unsubscribe")) {
+                hub.unsubscribe(session, topics(request.get("unsubscribe")));
+            }
+        } catch (IllegalArgumentException ex) {
+            session.close(StatusCode.BAD_PAYLOAD, ex.getMessage());
+        }
+    }
+
+    @OnWebSocketClose
+    public void closed(Session session, int status, String reason) {
+        hub.disconnect(session);
+    }
+
+    private static List<String> topics(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("expected a list of topics");
+        }
+        List<String> topics = new ArrayList<>();
+        for (Object topic : (List<?>) value) {
+            if (!(topic instanceof String)) {
+                throw new IllegalArgumentException("topics must be strings");
+            }
+            topics.add((String) topic);
+        }
+        return topics;
+    }
+}
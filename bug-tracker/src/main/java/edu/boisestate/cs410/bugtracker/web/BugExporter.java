@@ -0,0 +1,256 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes every bug, with its milestone, tags and comments, as NDJSON or CSV.
+ *
+ * Bugs are read in chunks in id order, each chunk with its own keyset query, and a
+ * chunk is written once it has been read, so memory use does not grow with the number
+ * of bugs and no connection or transaction is held for a whole export.  The export is
+ * therefore not a snapshot: a bug changed while it runs shows up as it was when its
+ * chunk was read.
+ */
+public class BugExporter {
+    private static final String CSV_HEADER = "bug_id,title,body,status,create_date,close_date,"
+            + "user_id,milestone_id,milestone_name,tags,comments";
+
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        /** One JSON object per line. */
+        NDJSON("application/x-ndjson", "ndjson"),
+        /** RFC 4180 CSV with a header row; tags are space separated and comments are a JSON array. */
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Look up a format by name, ignoring case.
+         * @throws IllegalArgumentException if there is no such format.
+         */
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("unknown export format " + name + ", expected ndjson or csv");
+            }
+        }
+    }
+
+    private final Format format;
+    private final int chunkSize;
+
+    /**
+     * Create an exporter.
+     * @param format The output format.
+     * @param chunkSize The number of bugs to read per query.
+     */
+    public BugExporter(Format format, int chunkSize) {
+        this.format = format;
+        this.chunkSize = chunkSize;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Supplies a connection for each chunk of an export.
+     */
+    public interface ConnectionSource {
+        /**
+         * Get a connection; the exporter closes it once the chunk has been read.
+         */
+        Connection getConnection() throws SQLException;
+    }
+
+    /**
+     * Export the bugs, reading them in chunks on one connection.
+     * @param cxn The connection to read with.  It is not closed.
+     * @param afterId Export only bugs with a greater id, e.g. to resume an export; 0 for all.
+     * @param out The destination.  It is not flushed or closed.
+     * @return The number of bugs written.
+     */
+    public long export(Connection cxn, int afterId, Writer out) throws SQLException, IOException {
+        return export(id -> readChunk(cxn, id), afterId, out);
+    }
+
+    /**
+     * Export the bugs, borrowing a connection for each chunk and giving it back
+     * before the chunk is written, so a slow client does not hold a connection.
+     * @param source Supplies the connections.
+     * @param afterId Export only bugs with a greater id, e.g. to resume an export; 0 for all.
+     * @param out The destination.  It is not flushed or closed.
+     * @return The number of bugs written.
+     */
+    public long export(ConnectionSource source, int afterId, Writer out) throws SQLException, IOException {
+        return export(id -> {
+            try (Connection cxn = source.getConnection()) {
+                return readChunk(cxn, id);
+            }
+        }, afterId, out);
+    }
+
+    private long export(ChunkReader reader, int afterId, Writer out) throws SQLException, IOException {
+        JsonWriter json = format == Format.CSV ? null : new JsonWriter(out);
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write("\r\n");
+        }
+        long count = 0;
+        int lastId = afterId;
+        List<ExportRow> rows;
+        do {
+            rows = reader.read(lastId);
+            for (ExportRow row : rows) {
+                if (json == null) {
+                    writeCsv(row, out);
+                } else {
+                    writeNdjson(row, json, out);
+                }
+                lastId = row.id;
+            }
+            count += rows.size();
+        } while (rows.size() == chunkSize);
+        return count;
+    }
+
+    // Read the chunk of bugs after a bug id.
+    private List<ExportRow> readChunk(Connection cxn, int afterId) throws SQLException {
+        List<ExportRow> rows = new ArrayList<>(chunkSize);
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.EXPORT_BUGS)) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, chunkSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ExportRow row = new ExportRow();
+                    row.id = rs.getInt(1);
+                    row.title = rs.getString(2);
+                    row.body = rs.getString(3);
+                    row.status = rs.getString(4);
+                    row.createDate = rs.getString(5);
+                    row.closeDate = rs.getString(6);
+                    row.userId = rs.getInt(7);
+                    int milestoneId = rs.getInt(8);
+                    row.milestoneId = rs.wasNull() ? null : milestoneId;
+                    row.milestoneName = rs.getString(9);
+                    row.tags = tags(rs);
+                    String comments = rs.getString(11);
+                    row.comments = comments == null ? "[]" : comments;
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void writeNdjson(ExportRow row, JsonWriter json, Writer out) throws IOException {
+        json.beginObject();
+        json.name("id").value(row.id);
+        json.name("title").value(row.title);
+        json.name("body").value(row.body);
+        json.name("status").value(row.status);
+        json.name("create_date").value(row.createDate);
+        json.name("close_date").value(row.closeDate);
+        json.name("user_id").value(row.userId);
+        if (row.milestoneId == null) {
+            json.name("milestone_id").nullValue();
+        } else {
+            json.name("milestone_id").value(row.milestoneId);
+        }
+        json.name("milestone_name").value(row.milestoneName);
+        json.name("tags").beginArray();
+        for (String tag : row.tags) {
+            json.value(tag);
+        }
+        json.endArray();
+        json.name("comments").rawValue(row.comments);
+        json.endObject();
+        out.write('\n');
+    }
+
+    private static void writeCsv(ExportRow row, Writer out) throws IOException {
+        String[] fields = {
+                Integer.toString(row.id), row.title, row.body, row.status, row.createDate, row.closeDate,
+                Integer.toString(row.userId), row.milestoneId == null ? null : row.milestoneId.toString(),
+                row.milestoneName
+        };
+        for (String field : fields) {
+            csv(out, field);
+            out.write(',');
+        }
+        csv(out, String.join(" ", row.tags));
+        out.write(',');
+        csv(out, row.comments);
+        out.write("\r\n");
+    }
+
+    private static String[] tags(ResultSet rs) throws SQLException {
+        Array array = rs.getArray(10);
+        try {
+            return (String[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+
+    // Write a CSV field, quoted only if it needs to be; null is written as an empty field.
+    private static void csv(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    // Reads the chunk of bugs after a bug id.
+    private interface ChunkReader {
+        List<ExportRow> read(int afterId) throws SQLException;
+    }
+
+    // One bug of a chunk, read before any of the chunk is written.
+    private static class ExportRow {
+        int id;
+        String title;
+        String body;
+        String status;
+        String createDate;
+        String closeDate;
+        int userId;
+        Integer milestoneId;
+        String milestoneName;
+        String[] tags;
+        String comments;
+    }
+}
@@ -0,0 +1,430 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Bulk loads bugs from NDJSON or CSV, in the layout {@link BugExporter} writes.
+ *
+ * Each record needs a {@code title}, {@code body}, {@code status}, {@code create_date}
+ * and a {@code user_id} or {@code user_name}; {@code close_date}, {@code milestone_id}
+ * or {@code milestone_name}, and {@code tags} are optional.  Other fields, including
+ * the exported {@code id} and {@code comments}, are ignored.  Tags are an array in
+ * NDJSON and space separated in CSV.
+ *
+ * Records are checked as they are read and streamed into a staging table with COPY.
+ * Each batch is then resolved and inserted with a handful of set-wise statements
+ * and committed.  The per-row milestone triggers on bugs are off during a batch;
+ * it updates each milestone's counts and row version once instead.  A record that
+ * fails a check, or names an unknown user or milestone, is reported to the
+ * {@link RejectListener} and skipped.
+ */
+public class BugImporter {
+    private static final Logger logger = LoggerFactory.getLogger(BugImporter.class);
+    private static final int COPY_CHUNK = 65536;
+
+    /**
+     * Receives the records that could not be imported.
+     */
+    public interface RejectListener {
+        /**
+         * @param line The line on which the record starts.
+         * @param reason Why it was rejected.
+         */
+        void reject(long line, String reason) throws IOException;
+    }
+
+    private final BugExporter.Format format;
+    private final int batchSize;
+
+    /**
+     * Create an importer.
+     * @param format The input format.
+     * @param batchSize The number of records to stage and commit at a time.
+     */
+    public BugImporter(BugExporter.Format format, int batchSize) {
+        this.format = format;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import bugs.  Each batch commits on its own, so after a failure the bugs of
+     * earlier batches stay imported; the log says how far the import got.
+     * @param cxn The connection to import with; it must be a PostgreSQL connection,
+     *            and is left in autocommit mode.
+     * @param in The records.
+     * @param rejects Receives the rejected records.
+     * @return The number of bugs imported and rejected.
+     */
+    public Result importBugs(Connection cxn, Reader in, RejectListener rejects) throws SQLException, IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 65536);
+        RecordSource source = format == BugExporter.Format.CSV ? csvSource(reader) : ndjsonSource(reader);
+        Result result = new Result();
+        long start = System.nanoTime();
+
+        cxn.setAutoCommit(false);
+        try {
+            try (Statement stmt = cxn.createStatement()) {
+                stmt.execute(Queries.CREATE_IMPORT_STAGING);
+            }
+            cxn.commit();
+
+            boolean more = true;
+            while (more) {
+                long batchStart = System.nanoTime();
+                long batchImported = result.imported;
+                int staged;
+                CopyIn copy = cxn.unwrap(PGConnection.class).getCopyAPI().copyIn(Queries.COPY_IMPORT_STAGING);
+                try {
+                    staged = stageBatch(source, copy, rejects, result);
+                    copy.endCopy();
+                } finally {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                }
+                more = staged == batchSize;
+                if (staged > 0) {
+                    result.imported += insertBatch(cxn, rejects, result);
+                }
+                cxn.commit();
+
+                long now = System.nanoTime();
+                double seconds = (now - start) / 1e9;
+                double batchSeconds = (now - batchStart) / 1e9;
+                logger.info("imported {} bugs, rejected {}, through line {} ({} bugs/s, last batch {} bugs/s)",
+                            result.imported, result.rejected, source.line(),
+                            String.format("%.0f", result.imported / Math.max(seconds, 1e-3)),
+                            String.format("%.0f", (result.imported - batchImported) / Math.max(batchSeconds, 1e-3)));
+            }
+        } catch (SQLException | IOException | RuntimeException ex) {
+            cxn.rollback();
+            logger.error("import failed after {} bugs; the batch ending at line {} was rolled back",
+                         result.imported, source.line());
+            throw ex;
+        } finally {
+            cxn.setAutoCommit(true);
+        }
+        return result;
+    }
+
+    // Check records and copy them to the staging table, up to a batch.
+    // Returns the number of records read, including rejected ones.
+    private int stageBatch(RecordSource source, CopyIn copy, RejectListener rejects,
+                           Result result) throws SQLException, IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(COPY_CHUNK + 4096);
+        StringBuilder row = new StringBuilder(512);
+        int count = 0;
+        while (count < batchSize) {
+            Function<String, Object> record;
+            try {
+                record = source.next();
+            } catch (IllegalArgumentException ex) {
+                result.rejected++;
+                rejects.reject(source.line(), ex.getMessage());
+                count++;
+                continue;
+            }
+            if (record == null) {
+                break;
+            }
+            count++;
+            row.setLength(0);
+            try {
+                stageRow(source.line(), record, row);
+            } catch (IllegalArgumentException ex) {
+                result.rejected++;
+                rejects.reject(source.line(), ex.getMessage());
+                continue;
+            }
+            byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+            chunk.write(bytes, 0, bytes.length);
+            if (chunk.size() >= COPY_CHUNK) {
+                copy.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                chunk.reset();
+            }
+        }
+        if (chunk.size() > 0) {
+            copy.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+        }
+        return count;
+    }
+
+    // Resolve and insert the staged batch; returns the number of bugs inserted.
+    private int insertBatch(Connection cxn, RejectListener rejects, Result result) throws SQLException, IOException {
+        try (Statement stmt = cxn.createStatement()) {
+            stmt.execute(Queries.IMPORT_BULK_MODE);
+            stmt.execute(Queries.ANALYZE_IMPORT_STAGING);
+            stmt.executeUpdate(Queries.IMPORT_RESOLVE_USERS);
+            result.rejected += rejectStaged(cxn, Queries.IMPORT_REJECT_USERS, "unknown user", rejects);
+            stmt.executeUpdate(Queries.IMPORT_RESOLVE_MILESTONES);
+            result.rejected += rejectStaged(cxn, Queries.IMPORT_REJECT_MILESTONES, "unknown milestone", rejects);
+            stmt.executeUpdate(Queries.IMPORT_ASSIGN_IDS);
+            stmt.executeUpdate(Queries.IMPORT_INSERT_TAGS);
+            stmt.executeQuery(Queries.IMPORT_LOCK_TAGS).close();
+            int inserted = stmt.executeUpdate(Queries.IMPORT_INSERT_BUGS);
+            stmt.executeUpdate(Queries.IMPORT_COUNT_MILESTONES);
+            stmt.executeUpdate(Queries.IMPORT_TOUCH_MILESTONES);
+            stmt.executeUpdate(Queries.IMPORT_TAG_BUGS);
+            stmt.executeUpdate(Queries.IMPORT_FAN_OUT);
+            return inserted;
+        }
+    }
+
+    private int rejectStaged(Connection cxn, String sql, String reason, RejectListener rejects) throws SQLException, IOException {
+        int count = 0;
+        try (PreparedStatement stmt = cxn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                rejects.reject(rs.getLong(1), reason + " " + rs.getString(2));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Check a record and append it to a row of COPY text, in COPY_IMPORT_STAGING's column order.
+    private static void stageRow(long line, Function<String, Object> record, StringBuilder row) {
+        String userId = integer(record, "user_id");
+        String userName = text(record, "user_name", 100);
+        if (userId == null && userName == null) {
+            throw new IllegalArgumentException("no user_id or user_name");
+        }
+        String[] columns = {
+                Long.toString(line),
+                required(record, "title", 100),
+                required(record, "body", 2000),
+                required(record, "status", 100),
+                date(record, "create_date", true),
+                date(record, "close_date", false),
+                userId,
+                userName,
+                integer(record, "milestone_id"),
+                text(record, "milestone_name", 100),
+                tags(record)
+        };
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                row.append('\t');
+            }
+            copyText(columns[i], row);
+        }
+        row.append('\n');
+    }
+
+    private static String text(Function<String, Object> record, String name, int maxLength) {
+        Object value = record.apply(name);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Map || value instanceof List) {
+            throw new IllegalArgumentException(name + " is not text");
+        }
+        String text = value.toString();
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (text.length() > maxLength) {
+            throw new IllegalArgumentException(name + " is longer than " + maxLength + " characters");
+        }
+        return text;
+    }
+
+    private static String required(Function<String, Object> record, String name, int maxLength) {
+        String text = text(record, name, maxLength);
+        if (text == null) {
+            throw new IllegalArgumentException("no " + name);
+        }
+        return text;
+    }
+
+    private static String integer(Function<String, Object> record, String name) {
+        String text = text(record, name, 11);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Integer.toString(Integer.parseInt(text));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " is not an integer: " + text);
+        }
+    }
+
+    // Dates are ISO dates; a timestamp keeps only its date.
+    private static String date(Function<String, Object> record, String name, boolean required) {
+        String text = required ? required(record, name, 40) : text(record, name, 40);
+        if (text == null) {
+            return null;
+        }
+        String date = text.length() > 10 && (text.charAt(10) == 'T' || text.charAt(10) == ' ')
+                ? text.substring(0, 10) : text;
+        try {
+            return LocalDate.parse(date).toString();
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(name + " is not a date: " + text);
+        }
+    }
+
+    // Tags as a single space separated string, the way the bug form takes them.
+    private static String tags(Function<String, Object> record) {
+        Object value = record.apply("tags");
+        if (value == null) {
+            return null;
+        }
+        List<String> tags = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object tag : (List<?>) value) {
+                String text = tag == null ? "" : tag.toString();
+                if (text.isEmpty() || text.matches(".*\\s.*")) {
+                    throw new IllegalArgumentException("bad tag \"" + text + "\"");
+                }
+                tags.add(text);
+            }
+        } else {
+            for (String tag : value.toString().split("\\s+")) {
+                if (!tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+        }
+        for (String tag : tags) {
+            if (tag.length() > 100) {
+                throw new IllegalArgumentException("tag longer than 100 characters");
+            }
+        }
+        return tags.isEmpty() ? null : String.join(" ", tags);
+    }
+
+    // Append a value in COPY text format, where \N is null.
+    private static void copyText(String value, StringBuilder row) {
+        if (value == null) {
+            row.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                row.append("\\\\");
+                break;
+            case '\t':
+                row.append("\\t");
+                break;
+            case '\n':
+                row.append("\\n");
+                break;
+            case '\r':
+                row.append("\\r");
+                break;
+            default:
+                row.append(c);
+            }
+        }
+    }
+
+    private static RecordSource ndjsonSource(BufferedReader reader) {
+        return new RecordSource() {
+            long line;
+
+            @Override
+            public Function<String, Object> next() throws IOException {
+                String text;
+                do {
+                    text = reader.readLine();
+                    if (text == null) {
+                        return null;
+                    }
+                    line++;
+                } while (text.trim().isEmpty());
+                Object value;
+                try {
+                    value = JsonParser.parse(text);
+                } catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException("malformed JSON: " + ex.getMessage());
+                }
+                if (!(value instanceof Map)) {
+                    throw new IllegalArgumentException("not a JSON object");
+                }
+                return ((Map<?, ?>) value)::get;
+            }
+
+            @Override
+            public long line() {
+                return line;
+            }
+        };
+    }
+
+    private static RecordSource csvSource(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        String[] header = csv.next();
+        if (header == null) {
+            throw new IllegalArgumentException("empty CSV input");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            columns.put(header[i].trim(), i);
+        }
+        return new RecordSource() {
+            @Override
+            public Function<String, Object> next() throws IOException {
+                String[] fields = csv.next();
+                if (fields == null) {
+                    return null;
+                }
+                return name -> {
+                    Integer i = columns.get(name);
+                    return i == null || i >= fields.length ? null : fields[i];
+                };
+            }
+
+            @Override
+            public long line() {
+                return csv.getRecordLine();
+            }
+        };
+    }
+
+    // The records of the input, each as a lookup from field name to value.
+    private interface RecordSource {
+        /**
+         * @return The next record, or {@code null} at the end of the input.
+         * @throws IllegalArgumentException if the record is malformed; the next call moves on.
+         */
+        Function<String, Object> next() throws IOException;
+
+        /**
+         * The line on which the current record starts.
+         */
+        long line();
+    }
+
+    /**
+     * The counts of an import.
+     */
+    public static class Result {
+        private long imported;
+        private long rejected;
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads bugs for the pages.
+ *
+ * Every bug query the pages run goes through here, and each returns {@link Bug}s
+ * rather than per-row maps.  Callers pass the connection, so they still choose
+ * between the primary and a replica.
+ */
+public class BugRepository {
+    private final TagDictionary tagDictionary;
+
+    public BugRepository(TagDictionary tagDictionary) {
+        this.tagDictionary = tagDictionary;
+    }
+
+    /**
+     * Get a bug with its tags.
+     * @return The bug, or {@code null} if there is no such bug.
+     */
+    public Bug findById(Connection cxn, int bugId) throws SQLException {
+        List<Bug> bugs;
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.BUG_BY_ID)) {
+            stmt.setInt(1, bugId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                bugs = readBugs(rs);
+            }
+        }
+        return bugs.isEmpty() ? null : withTags(cxn, bugs).get(0);
+    }
+
+    /**
+     * Get the bugs a user created, newest first.
+     */
+    public List<Bug> findByUser(Connection cxn, int userId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.USER_BUGS)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readBugs(rs);
+            }
+        }
+    }
+
+    /**
+     * Get the newest bugs in a user's subscription feed.
+     * @param limit The most bugs to return.
+     */
+    public List<Bug> findFeed(Connection cxn, int userId, int limit) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.FEED_BUGS)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return readBugs(rs);
+            }
+        }
+    }
+
+    /**
+     * Get a page of all bugs with their tags, newest first.
+     */
+    public PageRequest.Page<Bug> listPage(Connection cxn, PageRequest pageRequest) throws SQLException {
+        String query = pageRequest.format(Queries.BUG_LIST_PAGE, "create_date", "bug_id", "date");
+        List<Bug> bugs;
+        try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+            pageRequest.bind(stmt, 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                bugs = readBugs(rs);
+            }
+        }
+        return withTags(cxn, pageRequest.finish(bugs, Bug::getCreate_date, Bug::getId, "/buglist?"));
+    }
+
+    /**
+     * Get a page of a milestone's bugs, newest first.
+     */
+    public PageRequest.Page<Bug> milestonePage(Connection cxn, int milestoneId,
+                                               PageRequest pageRequest) throws SQLException {
+        String query = pageRequest.format(Queries.MILESTONE_BUGS_PAGE, "aa.create_date", "aa.bug_id", "date");
+        List<Bug> bugs;
+        try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+            stmt.setInt(1, milestoneId);
+            pageRequest.bind(stmt, 2);
+            try (ResultSet rs = stmt.executeQuery()) {
+                bugs = readBugs(rs);
+            }
+        }
+        return pageRequest.finish(bugs, Bug::getCreate_date, Bug::getId, "/milestone/" + milestoneId + "?");
+    }
+
+    /**
+     * Search for bugs with their tags, best matches first.  See {@link BugSearch}.
+     * @param terms The search text, as typed by the user.
+     */
+    public PageRequest.Page<Bug> search(Connection cxn, String terms, PageRequest pageRequest) throws SQLException {
+        String query = pageRequest.format(Queries.SEARCH_BUGS_PAGE, "rank", "bug_id", "real");
+        List<Bug> bugs = new ArrayList<>();
+        // the rank is only needed to build the page links
+        Map<Bug, Float> ranks = new IdentityHashMap<>();
+        try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+            stmt.setString(1, terms);
+            pageRequest.bind(stmt, 2);
+            try (ResultSet rs = stmt.executeQuery()) {
+                BugReader reader = new BugReader(rs);
+                int rank = rs.findColumn("rank");
+                while (rs.next()) {
+                    Bug bug = reader.read(rs);
+                    bugs.add(bug);
+                    ranks.put(bug, rs.getFloat(rank));
+                }
+            }
+        }
+        return withTags(cxn, pageRequest.finish(bugs, ranks::get, Bug::getId,
+                                                "/searchbug?searchterm=" + PageRequest.encode(terms) + "&"));
+    }
+
+    /**
+     * Read every row of a bug query.  The query may leave out any column but {@code bug_id}.
+     */
+    public static List<Bug> readBugs(ResultSet rs) throws SQLException {
+        BugReader reader = new BugReader(rs);
+        List<Bug> bugs = new ArrayList<>();
+        while (rs.next()) {
+            bugs.add(reader.read(rs));
+        }
+        return bugs;
+    }
+
+    private PageRequest.Page<Bug> withTags(Connection cxn, PageRequest.Page<Bug> page) throws SQLException {
+        return page.withItems(withTags(cxn, page.getItems()));
+    }
+
+    private List<Bug> withTags(Connection cxn, List<Bug> bugs) throws SQLException {
+        List<Integer> ids = new ArrayList<>(bugs.size());
+        for (Bug bug : bugs) {
+            ids.add(bug.getId());
+        }
+        Map<Integer, List<String>> tags = TagLoader.loadTags(cxn, tagDictionary, ids);
+        List<Bug> tagged = new ArrayList<>(bugs.size());
+        for (Bug bug : bugs) {
+            tagged.add(bug.withTags(tags.get(bug.getId())));
+        }
+        return tagged;
+    }
+
+    /**
+     * Maps the rows of one result set, with each column looked up once rather than
+     * by name on every row.  Missing columns have index 0 and read as {@code null}.
+     */
+    private static class BugReader {
+        private final int id;
+        private final int title;
+        private final int body;
+        private final int status;
+        private final int createDate;
+        private final int closeDate;
+        private final int userId;
+        private final int milestoneId;
+
+        BugReader(ResultSet rs) throws SQLException {
+            ResultSetMetaData meta = rs.getMetaData();
+            int[] columns = new int[8];
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                switch (meta.getColumnLabel(i)) {
+                case "bug_id":
+                    columns[0] = i;
+                    break;
+                case "bug_title":
+                    columns[1] = i;
+                    break;
+                case "bug_body":
+                    columns[2] = i;
+                    break;
+                case "bug_status":
+                    columns[3] = i;
+                    break;
+                case "create_date":
+                    columns[4] = i;
+                    break;
+                case "close_date":
+                    columns[5] = i;
+                    break;
+                case "user_id":
+                    columns[6] = i;
+                    break;
+                case "milestone_id":
+                    columns[7] = i;
+                    break;
+                default:
+                    break;
+                }
+            }
+            if (columns[0] == 0) {
+                throw new IllegalArgumentException("bug query has no bug_id column");
+            }
+            id = columns[0];
+            title = columns[1];
+            body = columns[2];
+            status = columns[3];
+            createDate = columns[4];
+            closeDate = columns[5];
+            userId = columns[6];
+            milestoneId = columns[7];
+        }
+
+        Bug read(ResultSet rs) throws SQLException {
+            return new Bug(rs.getInt(id),
+                           title == 0 ? null : rs.getString(title),
+                           body == 0 ? null : rs.getString(body),
+                           status == 0 ? null : rs.getString(status),
+                           createDate == 0 ? null : rs.getDate(createDate),
+                           closeDate == 0 ? null : rs.getDate(closeDate),
+                           getInteger(rs, userId),
+                           getInteger(rs, milestoneId));
+        }
+
+        private static Integer getInteger(ResultSet rs, int column) throws SQLException {
+            if (column == 0) {
+                return null;
+            }
+            int value = rs.getInt(column);
+            return rs.wasNull() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Full-text search over bug titles, tags and bodies.
+ *
+ * Each bug carries a {@code search_vector} column with a GIN index.  Titles are
+ * weighted highest, then tags, then the body, so ranked results favor title hits.
+ * {@link BugRepository#search} runs the search itself.
+ */
+public class BugSearch {
+    private BugSearch() {
+    }
+
+    /**
+     * Rebuild the search vector of a bug.  Call this after the bug's title, body or tags change.
+     * @param cxn The connection to use (joins the caller's transaction, if any).
+     * @param bugId The bug to reindex.
+     */
+    public static void reindex(Connection cxn, int bugId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.REINDEX_BUG_SEARCH)) {
+            stmt.setInt(1, bugId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -2,16 +2,20 @@ package edu.boisestate.cs410.bugtracker.web;
 
 import com.mitchellbosecke.pebble.loader.ClasspathLoader;
 import org.apache.commons.dbcp2.PoolingDataSource;
-import org.mindrot.jbcrypt.BCrypt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.*;
-import spark.template.pebble.PebbleTemplateEngine;
 
-import java.security.SecureRandom;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 import static java.sql.Connection.TRANSACTION_SERIALIZABLE;
 
@@ -20,17 +24,110 @@ import static java.sql.Connection.TRANSACTION_SERIALIZABLE;
  */
 public class BugTrackerServer {
     private static final Logger logger = LoggerFactory.getLogger(BugTrackerServer.class);
-
-    private final PoolingDataSource<? extends Connection> pool;
+    // the pages the routes render; checked against the compiled templates at startup
+    private static final String INDEX_VIEW = "index.html";
+    private static final String REGISTER_USER_VIEW = "registeruser.html";
+    private static final String REGISTER_BUG_VIEW = "registerbug.html";
+    private static final String USER_PREFS_VIEW = "userprefs.html";
+    private static final String BUG_LIST_VIEW = "buglist.html";
+    private static final String ABOUT_VIEW = "about.html";
+    private static final String BUG_INFO_VIEW = "bugInfo.html";
+    private static final String MILESTONE_LIST_VIEW = "milestonelist.html";
+    private static final String ADD_MILESTONE_VIEW = "addmilestone.html";
+    private static final String MILESTONE_INFO_VIEW = "milestoneInfo.html";
+    private static final List<String> VIEWS = Arrays.asList(
+            INDEX_VIEW, REGISTER_USER_VIEW, REGISTER_BUG_VIEW, USER_PREFS_VIEW, BUG_LIST_VIEW, ABOUT_VIEW,
+            BUG_INFO_VIEW, MILESTONE_LIST_VIEW, ADD_MILESTONE_VIEW, MILESTONE_INFO_VIEW);
+
+    private final DataSource pool;
+    private final ReplicaRouter router;
     private final Service http;
-    private final TemplateEngine engine;
+    private final PrecompiledTemplateEngine engine;
+    private final UserCache userCache = new UserCache();
+    private final TagDictionary tagDictionary = new TagDictionary();
+    private final BugRepository bugRepository = new BugRepository(tagDictionary);
+    private final MilestoneRepository milestoneRepository = new MilestoneRepository();
+    private final RouteMetrics metrics = new RouteMetrics();
+    private final PasswordHasher hasher;
+    private final ExecutorService rehashExecutor;
+    private final AssetPipeline assets = new AssetPipeline();
+    private final JsonApi api;
+    private final EventHub events;
+    private final long hashTimeoutMillis;
+    private final int feedSize;
+    // each export borrows a database connection per chunk, so limit how many run at once
+    private final Semaphore exportPermits;
+    private final int exportChunkSize;
 
     //Constructor
-    public BugTrackerServer(PoolingDataSource<? extends Connection> pds, Service svc) {
-        pool = pds;
+    public BugTrackerServer(PoolingDataSource<? extends Connection> pds, Service svc, Settings settings) {
+        this(new ReplicaRouter(pds, 0), svc, settings);
+    }
+
+    /**
+     * Create a server that sends writes to the router's primary and spreads reads
+     * over its replicas.
+     * @param settings The settings; see {@code bugtracker.properties} for the keys.
+     */
+    public BugTrackerServer(ReplicaRouter rtr, Service svc, Settings settings) {
+        router = rtr;
+        pool = rtr.getPrimary();
         http = svc;
+        hashTimeoutMillis = settings.getLong("password.timeoutMillis", 10000);
+        feedSize = settings.getInt("feed.size", 50);
+        exportPermits = new Semaphore(settings.getInt("export.maxConcurrent", 2));
+        exportChunkSize = settings.getInt("export.chunkSize", 1000);
         // new Classpathloader() needs to be added for mac/linux
-        engine = new PebbleTemplateEngine(new ClasspathLoader());
+        engine = new PrecompiledTemplateEngine(new ClasspathLoader(),
+                                               settings.getInt("templates.cacheSize", 64),
+                                               settings.getBoolean("templates.strict", false));
+        engine.precompile(PrecompiledTemplateEngine.findTemplates(INDEX_VIEW));
+        engine.checkViews(VIEWS);
+        metrics.gauge("template_cache_hit_ratio", "Fraction of renders served by precompiled templates.",
+                      engine::getHitRate);
+        try {
+            assets.load();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("cannot load static assets", ex);
+        }
+        engine.setGlobal("assets", assets.getUrls());
+        try (Connection cxn = pool.getConnection()) {
+            tagDictionary.loadAll(cxn);
+            logger.info("loaded {} tags", tagDictionary.size());
+        } catch (SQLException ex) {
+            // not fatal: tags are looked up as they are first used
+            logger.warn("could not preload tags", ex);
+        }
+        metrics.gauge("tag_dictionary_size", "Tags held in memory.", tagDictionary::size);
+        hasher = new PasswordHasher(settings.getInt("password.cost", 10),
+                                    settings.getInt("password.threads", Runtime.getRuntime().availableProcessors()),
+                                    settings.getInt("password.queueSize", 64));
+        // stores upgraded password hashes after login; see rehash
+        rehashExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                                new ArrayBlockingQueue<>(settings.getInt("password.queueSize", 64)),
+                                                r -> {
+                                                    Thread t = new Thread(r, "password-rehash");
+                                                    t.setDaemon(true);
+                                                    return t;
+                                                });
+        metrics.gauge("password_hash_queue_depth", "Password hashes waiting for a hashing thread.",
+                      hasher::getQueueDepth);
+        metrics.gauge("password_hash_rejected", "Password hashes refused because the queue was full.",
+                      hasher::getRejectedCount);
+        api = new JsonApi(router, tagDictionary, http, settings);
+        events = new EventHub(settings.getInt("events.queueSize", 1024),
+                              settings.getInt("events.maxPending", 64),
+                              this::feedTopics);
+        events.start();
+        metrics.gauge("event_connections", "Open live-update WebSockets.", events::getConnectionCount);
+        metrics.gauge("event_dropped_subscribers", "WebSockets closed for falling too far behind.",
+                      events::getDroppedSubscribers);
+        metrics.gauge("event_dropped_events", "Events dropped because the event queue was full.",
+                      events::getDroppedEvents);
+        // Spark refuses WebSocket routes once any HTTP route is mapped
+        BugEventSocket.setHub(events);
+        http.webSocket("/events", BugEventSocket.class);
+        http.webSocketIdleTimeoutMillis(settings.getInt("events.idleTimeoutMillis", 300000));
 
         /*
         // Please keep the routes in the same order as the route
@@ -43,47 +140,69 @@ public class BugTrackerServer {
         // Get routes
         ///////////////////////////////////////////////////////////
         // Home page route
-        http.get("/", this::indexPage, engine);
+        getPage("/", this::indexPage);
         // logout route
-        http.get("/logout", this::logout);
+        get("/logout", this::logout);
         // Register user route :: Creates a new user
-        http.get("/registeruser", this::registerUserPage, engine);
+        getPage("/registeruser", this::registerUserPage);
         // Register bug route :: Create a new bug
-        http.get("/registerbug", this::registerBugPage, engine);
+        getPage("/registerbug", this::registerBugPage);
         // User Preferences route
-        http.get("/userprefs", this::userPrefsPage, engine);
+        getPage("/userprefs", this::userPrefsPage);
         // Bug List route
-        http.get("/buglist", this::bugListPage, engine);
+        getPage("/buglist", this::bugListPage);
         // About page route
-        http.get("/about", this::aboutPage, engine);
+        getPage("/about", this::aboutPage);
         // Main Bug page :: shows bug information, allows for simple
         // interactions with the bug
-        http.get("/bugs/:bugid", this::bugInfoPage, engine);
+        getPage("/bugs/:bugid", this::bugInfoPage);
         // Search for the bugs
-        http.get("/searchbug", this::searchBugs, engine);
+        getPage("/searchbug", this::searchBugs);
         // List milestones
-        http.get("/milestonelist", this::milestoneList, engine);
+        getPage("/milestonelist", this::milestoneList);
         // Add Milestone page
-        http.get("/addmilestone", this::addMilestone, engine);
+        getPage("/addmilestone", this::addMilestone);
         // Milestone Detail
-        http.get("/milestone/:milestoneid", this::milestoneDetail, engine);
-
+        getPage("/milestone/:milestoneid", this::milestoneDetail);
+        // Template cache statistics
+        get("/stats/templates", this::templateStats);
+        // Request metrics, in the Prometheus text format
+        get("/metrics", this::metricsPage);
+        // Fingerprinted static assets
+        get("/assets/:name", this::asset);
+        // JSON API :: needs a logged in session, like the pages
+        http.before("/api/*", this::requireApiUser);
+        get("/api/v1/bugs", api::bugs);
+        get("/api/v1/bugs/:bugid", api::bug);
+        get("/api/v1/search", api::search);
+        get("/api/v1/milestones", api::milestones);
+        get("/api/v1/milestones/:milestoneid", api::milestone);
+        get("/api/v1/milestones/:milestoneid/bugs", api::milestoneBugs);
+        get("/api/v1/tags", api::tags);
+        // Bulk export of every bug, as NDJSON or CSV
+        get("/export/bugs", this::exportBugs);
+        // One-time ticket for opening the /events WebSocket
+        get("/events/ticket", this::eventTicket);
 
         // Post routes
         /////////////////////////////////////////////////////////////
         // Login route :: Logs in the user
-        http.post("/login", this::login);
+        post("/login", this::login);
         // Create User route :: Creates a new user
-        http.post("/createuser", this::createUserPage);
+        post("/createuser", this::createUserPage);
         // Create Bug route :: Create a new bug
-        http.post("/createbug", this::createBugPage);
+        post("/createbug", this::createBugPage);
         // Update User route :: Update existing user
-        http.post("/updateuser", this::updateUserPage);
+        post("/updateuser", this::updateUserPage);
         // Add new milestone
-        http.post("/createmilestone", this::createMilestone);
+        post("/createmilestone", this::createMilestone);
         // Subscribe to tag
-        http.post("/subscribetag", this::subscribeTag);
+        post("/subscribetag", this::subscribeTag);
 
+        // Compress dynamic responses
+        if (settings.getBoolean("http.gzip", true)) {
+            http.after(this::gzipResponse);
+        }
     }
 
     //////////////////////////////////////////////////////////
@@ -97,98 +216,28 @@ public class BugTrackerServer {
         User user = getUser(request, fields);
 
         // initialize CSRF token
-        String token = request.session().attribute("csrf_token");
-        if (token == null) {
-            SecureRandom rng = new SecureRandom();
-            byte[] bytes = new byte[8];
-            rng.nextBytes(bytes);
-            token = Base64.getEncoder().encodeToString(bytes);
-            request.session(true).attribute("csrf_token", token);
-        }
-        fields.put("csrf_token", token);
-
-        ArrayList<HashMap<String,Object>> userBugs = new ArrayList<>();
-        ArrayList<HashMap<String,Object>> tagBugs = new ArrayList<>();
+        CsrfTokens.initToken(request, fields);
+
+        List<Bug> userBugs = Collections.emptyList();
+        List<Bug> tagBugs = Collections.emptyList();
         if(user != null){
-            String getUserBugs = "SELECT aa.bug_id,\n" +
-                    "       aa.bug_title,\n" +
-                    "       aa.bug_body,\n" +
-                    "       aa.bug_status,\n" +
-                    "       aa.create_date,\n" +
-                    "       aa.close_date,\n" +
-                    "       aa.user_id,\n" +
-                    "       aa.milestone_id\n" +
-                    "FROM bugs aa\n" +
-                    "WHERE aa.user_id = ?" +
-                    " ORDER BY aa.create_date DESC;";
-
-            String getTagBugs = "SELECT DISTINCT\n" +
-                    "  cc.bug_id,\n" +
-                    "  cc.bug_title,\n" +
-                    "  cc.bug_body,\n" +
-                    "  cc.bug_status,\n" +
-                    "  cc.create_date,\n" +
-                    "  cc.close_date,\n" +
-                    "  cc.user_id,\n" +
-                    "  cc.milestone_id\n" +
-                    " FROM tags aa\n" +
-                    "  JOIN tag_bug_xref bb\n" +
-                    "    ON aa.tag_id = bb.tag_id\n" +
-                    "  JOIN bugs cc\n" +
-                    "    ON bb.bug_id = cc.bug_id\n" +
-                    "  JOIN user_tag_subscription dd\n" +
-                    "    ON dd.tag_id = aa.tag_id\n" +
-                    "  JOIN users ee\n" +
-                    "    ON ee.user_id = dd.user_id\n" +
-                    " WHERE ee.user_id = ?" +
-                    " ORDER BY cc.create_date DESC ;";
-            try (Connection cxn = pool.getConnection()){
-                 try(PreparedStatement stmt = cxn.prepareStatement(getUserBugs)) {
-                    stmt.setInt(1, user.getUser_id());
-                    try(ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            HashMap<String, Object> bug = new HashMap<String, Object>();
-                            int cur_bug_id = rs.getInt("bug_id");
-                            bug.put("id", cur_bug_id);
-                            bug.put("title", rs.getString("bug_title"));
-                            bug.put("body", rs.getString("bug_body"));
-                            bug.put("status", rs.getString("bug_status"));
-                            bug.put("create_date", rs.getString("create_date"));
-                            bug.put("close_date", rs.getString("close_date"));
-                            bug.put("user_id", rs.getString("user_id"));
-                            bug.put("milestone_id", rs.getString("milestone_id"));
-                            userBugs.add(bug);
-                        }
-                    }
-                }
-                try(PreparedStatement stmt = cxn.prepareStatement(getTagBugs)) {
-                    stmt.setInt(1, user.getUser_id());
-                    try(ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            HashMap<String, Object> bug = new HashMap<String, Object>();
-                            int cur_bug_id = rs.getInt("bug_id");
-                            bug.put("id", cur_bug_id);
-                            bug.put("title", rs.getString("bug_title"));
-                            bug.put("body", rs.getString("bug_body"));
-                            bug.put("status", rs.getString("bug_status"));
-                            bug.put("create_date", rs.getString("create_date"));
-                            bug.put("close_date", rs.getString("close_date"));
-                            bug.put("user_id", rs.getString("user_id"));
-                            bug.put("milestone_id", rs.getString("milestone_id"));
-                            tagBugs.add(bug);
-                        }
-                    }
-                }
+            try (Connection cxn = router.getReadConnection(request)){
+                userBugs = bugRepository.findByUser(cxn, user.getUser_id());
+                tagBugs = bugRepository.findFeed(cxn, user.getUser_id(), feedSize);
             }
         }
 
         fields.put("userBugs", userBugs);
         fields.put("tagBugs", tagBugs);
 
-        return new ModelAndView(fields, "index.html");
+        return new ModelAndView(fields, INDEX_VIEW);
     }
 
     String logout(Request request, Response response) {
+        Long uid = request.session().attribute("userId");
+        if (uid != null) {
+            userCache.invalidate(uid);
+        }
         request.session().removeAttribute("userId");
         response.redirect("/", 303);
         return "Goodbye";
@@ -196,7 +245,7 @@ public class BugTrackerServer {
 
     ModelAndView registerUserPage(Request request, Response response) throws SQLException {
         Map<String,Object> fields = new HashMap<>();
-        return new ModelAndView(fields, "registeruser.html");
+        return new ModelAndView(fields, REGISTER_USER_VIEW);
     }
 
     ModelAndView registerBugPage(Request request, Response response) throws SQLException {
@@ -207,7 +256,7 @@ public class BugTrackerServer {
             return null;
         }
 
-        return new ModelAndView(fields, "registerbug.html");
+        return new ModelAndView(fields, REGISTER_BUG_VIEW);
     }
 
     ModelAndView userPrefsPage(Request request, Response response) throws SQLException {
@@ -219,17 +268,9 @@ public class BugTrackerServer {
             return null;
         }
         // initialize CSRF token
-        String token = request.session().attribute("csrf_token");
-        if (token == null) {
-            SecureRandom rng = new SecureRandom();
-            byte[] bytes = new byte[8];
-            rng.nextBytes(bytes);
-            token = Base64.getEncoder().encodeToString(bytes);
-            request.session(true).attribute("csrf_token", token);
-        }
-        fields.put("csrf_token", token);
+        CsrfTokens.initToken(request, fields);
 
-        return new ModelAndView(fields, "userprefs.html");
+        return new ModelAndView(fields, USER_PREFS_VIEW);
     }
 
     ModelAndView bugListPage(Request request, Response response) throws SQLException {
@@ -242,68 +283,23 @@ public class BugTrackerServer {
         }
 
         // initialize CSRF token
-        String token = request.session().attribute("csrf_token");
-        if (token == null) {
-            SecureRandom rng = new SecureRandom();
-            byte[] bytes = new byte[8];
-            rng.nextBytes(bytes);
-            token = Base64.getEncoder().encodeToString(bytes);
-            request.session(true).attribute("csrf_token", token);
-        }
-        fields.put("csrf_token", token);
+        CsrfTokens.initToken(request, fields);
 
         if (user != null) {
-            List<Map<String, Object>> bugs = new ArrayList<>();
-            try (Connection cxn = pool.getConnection()) {
-                try (Statement stmt = cxn.createStatement();
-                     ResultSet rs = stmt.executeQuery("SELECT bug_title, bug_id, bug_status, create_date \n" +
-                             "FROM bugs\n" +
-                             "ORDER BY create_date DESC")) {
-
-                    while (rs.next()) {
-                        Map<String, Object> bug = new HashMap<>();
-                        int cur_bug_id = rs.getInt("bug_id");
-                        bug.put("id", cur_bug_id);
-                        bug.put("title", rs.getString("bug_title"));
-                        bug.put("status", rs.getString("bug_status"));
-                        bug.put("createdate", rs.getDate("create_date"));
-                        try (PreparedStatement tagStmt = cxn.prepareStatement("select cc.tag \n" +
-                                "     from bugs aa\n" +
-                                "     join tag_bug_xref bb\n" +
-                                "     on aa.bug_id = bb.bug_id\n" +
-                                "     join tags cc\n" +
-                                "     on cc.tag_id = bb.tag_id\n" +
-                                "     where aa.bug_id = ?")) {
-                            tagStmt.setInt(1, cur_bug_id);
-                            ResultSet tagRs = tagStmt.executeQuery();
-                            ArrayList<String> tags = new ArrayList<>();
-                            while (tagRs.next()) {
-                                tags.add(tagRs.getString("tag"));
-                            }
-
-                            StringBuilder sb = new StringBuilder();
-                            for (String tag : tags)
-                            {
-                                sb.append(tag);
-                                sb.append(" ");
-                            }
-                            bug.put("tags", sb.toString());
-                        }
-
-                        bugs.add(bug);
-                    }
-                    //fields.put("totalDonors", rs.getBigDecimal("total_donors"));
-                }
-                fields.put("bugs", bugs);
+            PageRequest pageRequest = getPageRequest(request);
+            try (Connection cxn = router.getReadConnection(request)) {
+                PageRequest.Page<Bug> page = bugRepository.listPage(cxn, pageRequest);
+                fields.put("bugs", page.getItems());
+                fields.put("page", page);
             }
         }
-        return new ModelAndView(fields, "buglist.html");
+        return new ModelAndView(fields, BUG_LIST_VIEW);
     }
 
     ModelAndView aboutPage(Request request, Response response) throws SQLException {
         Map<String,Object> fields = new HashMap<>();
         //Todo: Get about page info
-        return new ModelAndView(fields, "about.html");
+        return new ModelAndView(fields, ABOUT_VIEW);
     }
 
     ModelAndView bugInfoPage(Request request, Response response) throws SQLException {
@@ -316,60 +312,18 @@ public class BugTrackerServer {
             return null;
         }
 
-        String query = "SELECT aa.bug_id,\n" +
-              "       aa.bug_title,\n" +
-              "       aa.bug_body,\n" +
-              "       aa.bug_status,\n" +
-              "       aa.create_date,\n" +
-              "       aa.close_date,\n" +
-              "       aa.user_id,\n" +
-              "       aa.milestone_id\n" +
-              "FROM bugs aa\n" +
-              "WHERE aa.bug_id = ?";
-        try (Connection cxn = pool.getConnection();
-          PreparedStatement stmt = cxn.prepareStatement(query)) {
-         stmt.setInt(1, bug_id);
-         try(ResultSet rs = stmt.executeQuery()) {
-             HashMap<String, Object> bug = new HashMap<String, Object>();
-             if(!rs.next()){
-                 throw new IllegalStateException("Bug Not Found.");
-             }
-             int cur_bug_id = rs.getInt("bug_id");
-             bug.put("id", cur_bug_id);
-             bug.put("title", rs.getString("bug_title"));
-             bug.put("body", rs.getString("bug_body"));
-             bug.put("status", rs.getString("bug_status"));
-             bug.put("create_date", rs.getString("create_date"));
-             bug.put("close_date", rs.getString("close_date"));
-             bug.put("user_id", rs.getString("user_id"));
-             bug.put("milestone_id", rs.getString("milestone_id"));
-             try (PreparedStatement tagStmt = cxn.prepareStatement("select cc.tag \n" +
-                     "     from bugs aa\n" +
-                     "     join tag_bug_xref bb\n" +
-                     "     on aa.bug_id = bb.bug_id\n" +
-                     "     join tags cc\n" +
-                     "     on cc.tag_id = bb.tag_id\n" +
-                     "     where aa.bug_id = ?")) {
-                 tagStmt.setInt(1, cur_bug_id);
-                 ResultSet tagRs = tagStmt.executeQuery();
-                 ArrayList<String> tags = new ArrayList<>();
-                 while (tagRs.next()) {
-                     tags.add(tagRs.getString("tag"));
-                 }
-
-                 StringBuilder sb = new StringBuilder();
-                 for (String tag : tags)
-                 {
-                     sb.append(tag);
-                     sb.append(" ");
-                 }
-                 bug.put("tags", sb.toString());
-                 bug.put("tagList", tags);
-             }
-             fields.put("bug", bug);
+        try (Connection cxn = router.getReadConnection(request)) {
+         // one cheap version check; an unchanged page skips the query and the render
+         if (checkVersion(cxn, Queries.BUG_VERSION, "bug", bug_id, user, request, response)) {
+             return null;
+         }
+         Bug bug = bugRepository.findById(cxn, bug_id);
+         if (bug == null) {
+             throw new IllegalStateException("Bug Not Found.");
          }
+         fields.put("bug", bug);
         }
-        return new ModelAndView(fields, "bugInfo.html");
+        return new ModelAndView(fields, BUG_INFO_VIEW);
     }
 
     ModelAndView searchBugs(Request request, Response response) throws SQLException {
@@ -383,57 +337,21 @@ public class BugTrackerServer {
 
         //If no search term just show the full list...
         String searchTerm = request.queryParams("searchterm");
-        if (searchTerm == null || searchTerm.isEmpty()) {
-            searchTerm = "";
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            response.redirect("/buglist", 303);
+            return null;
         }
 
-        String searchQuery = "SELECT bug_title, bug_id, bug_status, create_date "+
-                "FROM bugs " +
-                "WHERE bug_title like '%' || ? || '%' " +
-                "ORDER BY create_date DESC ";
-        List<Map<String, Object>> bugs = new ArrayList<>();
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(searchQuery)) {
-            stmt.setString(1, searchTerm);
-            stmt.execute();
-            try (ResultSet rs = stmt.getResultSet()) {
-                while(rs.next()){
-                    Map<String, Object> bug = new HashMap<>();
-                    int cur_bug_id = rs.getInt("bug_id");
-                    bug.put("id", cur_bug_id);
-                    bug.put("title", rs.getString("bug_title"));
-                    bug.put("status", rs.getString("bug_status"));
-                    bug.put("createdate", rs.getDate("create_date"));
-                    try (PreparedStatement tagStmt = cxn.prepareStatement("select cc.tag \n" +
-                            "     from bugs aa\n" +
-                            "     join tag_bug_xref bb\n" +
-                            "     on aa.bug_id = bb.bug_id\n" +
-                            "     join tags cc\n" +
-                            "     on cc.tag_id = bb.tag_id\n" +
-                            "     where aa.bug_id = ?")) {
-                        tagStmt.setInt(1, cur_bug_id);
-                        ResultSet tagRs = tagStmt.executeQuery();
-                        ArrayList<String> tags = new ArrayList<>();
-                        while (tagRs.next()) {
-                            tags.add(tagRs.getString("tag"));
-                        }
-
-                        StringBuilder sb = new StringBuilder();
-                        for (String tag : tags)
-                        {
-                            sb.append(tag);
-                            sb.append(" ");
-                        }
-                        bug.put("tags", sb.toString());
-                    }
-
-                    bugs.add(bug);
-                }
-            }
+        PageRequest pageRequest = getPageRequest(request);
+        PageRequest.Page<Bug> page;
+        try (Connection cxn = router.getReadConnection(request)) {
+            page = bugRepository.search(cxn, searchTerm, pageRequest);
         }
-        fields.put("bugs", bugs);
+        fields.put("bugs", page.getItems());
+        fields.put("page", page);
+        fields.put("searchterm", searchTerm);
 
-        return new ModelAndView(fields, "buglist.html");
+        return new ModelAndView(fields, BUG_LIST_VIEW);
     }
 
     ModelAndView milestoneList(Request request, Response response) throws SQLException {
@@ -446,42 +364,14 @@ public class BugTrackerServer {
         }
 
         // initialize CSRF token
-        String token = request.session().attribute("csrf_token");
-        if (token == null) {
-            SecureRandom rng = new SecureRandom();
-            byte[] bytes = new byte[8];
-            rng.nextBytes(bytes);
-            token = Base64.getEncoder().encodeToString(bytes);
-            request.session(true).attribute("csrf_token", token);
-        }
-        fields.put("csrf_token", token);
-
-        List<Map<String, Object>> milestones = new ArrayList<>();
-        try (Connection cxn = pool.getConnection()) {
-            try (Statement stmt = cxn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT \n" +
-                         "  aa.milestone_id, \n" +
-                         "  aa.milestone_name, \n" +
-                         "  aa.milestone_description, \n" +
-                         "  count(bug_id) AS bug_count \n" +
-                         " FROM milestones aa \n" +
-                         "  LEFT JOIN bugs bb \n" +
-                         "    ON aa.milestone_id = bb.milestone_id \n" +
-                         " GROUP BY aa.milestone_id, aa.milestone_name, aa.milestone_description;")) {
-                while (rs.next()) {
-                    Map<String, Object> milestone = new HashMap<>();
-                    //int cur_milestone_id = rs.getInt("bug_id");
-                    milestone.put("id", rs.getInt("milestone_id"));
-                    milestone.put("name", rs.getString("milestone_name"));
-                    milestone.put("description", rs.getString("milestone_description"));
-                    milestone.put("bugCount", rs.getString("bug_count"));
-                    milestones.add(milestone);
-                }
-            }
+        CsrfTokens.initToken(request, fields);
 
+        List<Milestone> milestones;
+        try (Connection cxn = router.getReadConnection(request)) {
+            milestones = milestoneRepository.findAll(cxn);
         }
         fields.put("milestones", milestones);
-        return new ModelAndView(fields, "milestonelist.html");
+        return new ModelAndView(fields, MILESTONE_LIST_VIEW);
     }
 
     ModelAndView addMilestone(Request request, Response response) throws SQLException {
@@ -492,7 +382,7 @@ public class BugTrackerServer {
             this.logout(request, response);
             return null;
         }
-        return new ModelAndView(fields, "addmilestone.html");
+        return new ModelAndView(fields, ADD_MILESTONE_VIEW);
     }
 
     ModelAndView milestoneDetail(Request request, Response response) throws SQLException {
@@ -505,57 +395,103 @@ public class BugTrackerServer {
             return null;
         }
 
-        String query = "SELECT\n" +
-                "  milestone_id,\n" +
-                "  milestone_name,\n" +
-                "  milestone_description\n" +
-                "FROM milestones\n" +
-                "WHERE milestone_id = ?;";
-
-        String bugListQuery = "SELECT aa.bug_id,\n" +
-                "       aa.bug_title,\n" +
-                "       aa.bug_body,\n" +
-                "       aa.bug_status,\n" +
-                "       aa.create_date,\n" +
-                "       aa.close_date,\n" +
-                "       aa.user_id,\n" +
-                "       aa.milestone_id\n" +
-                "FROM bugs aa\n" +
-                "WHERE aa.milestone_id = ?";
+        PageRequest pageRequest = getPageRequest(request);
 
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(query)) {
-            stmt.setInt(1, milestone_id);
-            try(ResultSet rs = stmt.executeQuery()) {
-                HashMap<String, Object> milestone = new HashMap<String, Object>();
-                if(!rs.next()){
-                    throw new IllegalStateException("Milestone Not Found.");
+        try (Connection cxn = router.getReadConnection(request)) {
+            if (checkVersion(cxn, Queries.MILESTONE_VERSION, "milestone", milestone_id, user, request, response)) {
+                return null;
+            }
+            Milestone milestone = milestoneRepository.findById(cxn, milestone_id);
+            if (milestone == null) {
+                throw new IllegalStateException("Milestone Not Found.");
+            }
+            PageRequest.Page<Bug> page = bugRepository.milestonePage(cxn, milestone_id, pageRequest);
+            fields.put("milestone", milestone);
+            fields.put("bugs", page.getItems());
+            fields.put("page", page);
+        }
+        return new ModelAndView(fields, MILESTONE_INFO_VIEW);
+    }
+
+    String templateStats(Request request, Response response) {
+        response.type("text/plain");
+        return String.format("cached %d\nhits %d\nmisses %d\nhit_rate %.4f\n",
+                             engine.getCachedCount(), engine.getHits(),
+                             engine.getMisses(), engine.getHitRate());
+    }
+
+    String asset(Request request, Response response) throws IOException {
+        if (!assets.serve(request, response, request.params("name"))) {
+            http.halt(404, "No such asset");
+        }
+        return "";
+    }
+
+    String exportBugs(Request request, Response response) throws SQLException, IOException {
+        Map<String,Object> fields = new HashMap<>();
+        User user = getUser(request, fields);
+        if(user == null){
+            this.logout(request, response);
+            return null;
+        }
+
+        BugExporter.Format format = null;
+        int afterId = 0;
+        try {
+            String formatParam = request.queryParams("format");
+            format = BugExporter.Format.parse(formatParam == null ? "ndjson" : formatParam);
+            String afterParam = request.queryParams("after");
+            if (afterParam != null && !afterParam.isEmpty()) {
+                afterId = Integer.parseInt(afterParam);
+            }
+        } catch (IllegalArgumentException ex) {
+            http.halt(400, "Invalid export request: " + ex.getMessage());
+        }
+        boolean gzipFile = Boolean.parseBoolean(request.queryParams("gzip"));
+
+        if (!exportPermits.tryAcquire()) {
+            http.halt(503, "Too many exports running, please try again shortly.");
+        }
+        try {
+            BugExporter exporter = new BugExporter(format, exportChunkSize);
+            String filename = "bugs." + format.getExtension() + (gzipFile ? ".gz" : "");
+            response.header("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+            OutputStream stream = response.raw().getOutputStream();
+            ExportGzipStream gzip = null;
+            if (gzipFile) {
+                response.type("application/gzip");
+                stream = gzip = new ExportGzipStream(stream);
+            } else {
+                response.type(format.getContentType() + "; charset=utf-8");
+                if (AssetPipeline.acceptsGzip(request)) {
+                    response.header("Content-Encoding", "gzip");
+                    response.header("Vary", "Accept-Encoding");
+                    stream = gzip = new ExportGzipStream(stream);
                 }
-                milestone.put("milestone_id", milestone_id);
-                milestone.put("milestone_name", rs.getString("milestone_name"));
-                milestone.put("milestone_description", rs.getString("milestone_description"));
-                try (PreparedStatement bugStmt = cxn.prepareStatement(bugListQuery)) {
-                    bugStmt.setInt(1, milestone_id);
-                    ResultSet bugRs = bugStmt.executeQuery();
-                    ArrayList<HashMap<String, Object>> bugs = new ArrayList<>();
-                    while (bugRs.next()) {
-                        HashMap<String, Object> bug = new HashMap<>();
-                        bug.put("id", bugRs.getInt("bug_id"));
-                        bug.put("title", bugRs.getString("bug_title"));
-                        bug.put("body", bugRs.getString("bug_body"));
-                        bug.put("status", bugRs.getString("bug_status"));
-                        bug.put("create_date", bugRs.getString("create_date"));
-                        bug.put("close_date", bugRs.getString("close_date"));
-                        bug.put("user_id", bugRs.getString("user_id"));
-                        bug.put("milestone_id", bugRs.getString("milestone_id"));
-                        bugs.add(bug);
-                    }
-                    milestone.put("bugs", bugs);
+            }
+            // no Content-Length, so the response is chunked as the rows arrive; each chunk
+            // of rows borrows a connection only while it is read
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 65536);
+            boolean finished = false;
+            try {
+                long count = exporter.export(() -> router.getReadConnection(request), afterId, out);
+                out.close();
+                finished = true;
+                logger.info("user {} exported {} bugs as {}", user.getUser_id(), count, format);
+            } finally {
+                if (!finished && gzip != null) {
+                    gzip.abort();
                 }
-                fields.put("milestone", milestone);
             }
+        } finally {
+            exportPermits.release();
         }
-        return new ModelAndView(fields, "milestoneInfo.html");
+        return "";
+    }
+
+    String metricsPage(Request request, Response response) {
+        response.type("text/plain; version=0.0.4");
+        return metrics.render();
     }
 
     /////////////////////////////////////////////////////////
@@ -576,30 +512,39 @@ public class BugTrackerServer {
             http.halt(400, "No password provided");
         }
 
-        String userQuery = "SELECT user_id, user_password FROM users WHERE user_name = ?";
-
+        // read the hash and give the connection back before the (slow) check
+        String hash = null;
+        long userId = 0;
         try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(userQuery)) {
+             PreparedStatement stmt = cxn.prepareStatement(Queries.LOGIN_USER)) {
             stmt.setString(1, name);
             logger.debug("looking up user {}", name);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     logger.debug("found user {}", name);
-                    String hash = rs.getString("user_password");
-                    if (BCrypt.checkpw(password, hash)) {
-                        logger.debug("user {} has valid password", name);
-                        request.session(true).attribute("userId", rs.getLong("user_id"));
-                        response.redirect("/", 303);
-                        return "Hi!";
-                    } else {
-                        logger.debug("invalid password for user {}", name);
-                    }
+                    hash = rs.getString("user_password");
+                    userId = rs.getLong("user_id");
                 } else {
                     logger.debug("no user {} found", name);
                 }
             }
         }
 
+        if (hash != null) {
+            String storedHash = hash;
+            if (awaitHash(() -> hasher.check(password, storedHash))) {
+                logger.debug("user {} has valid password", name);
+                if (hasher.needsRehash(hash)) {
+                    rehash(userId, password, hash);
+                }
+                request.session(true).attribute("userId", userId);
+                response.redirect("/", 303);
+                return "Hi!";
+            } else {
+                logger.debug("invalid password for user {}", name);
+            }
+        }
+
         http.halt(400, "invalid username or password");
         return null;
     }
@@ -629,13 +574,9 @@ public class BugTrackerServer {
         if (!password.equals(request.queryParams("confirm"))) {
             http.halt(400, "Password and confirmation do not match.");
         }
-        String pwHash = BCrypt.hashpw(password, BCrypt.gensalt(10));
 
-        String existingUserQuery = "Select *\n" +
-                "FROM users\n" +
-                "WHERE lower(user_name) = lower(?)";
         try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(existingUserQuery)) {
+             PreparedStatement stmt = cxn.prepareStatement(Queries.USER_BY_NAME)) {
             stmt.setString(1, userName);
             stmt.execute();
             try (ResultSet rs = stmt.getResultSet()) {
@@ -645,14 +586,13 @@ public class BugTrackerServer {
             }
         }
 
-        String addUser = "INSERT INTO users (user_name, user_email, display_name, user_password) " +
-                "VALUES (?, ?, ?, ?) " +
-                "RETURNING user_id";
+        // hash only once the name is known to be free, so taken names cost no hashing
+        String pwHash = awaitHash(() -> hasher.hash(password));
 
         long userId;
 
         try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(addUser)) {
+             PreparedStatement stmt = cxn.prepareStatement(Queries.INSERT_USER)) {
             stmt.setString(1, userName);
             stmt.setString(2, email);
             stmt.setString(3, displayName);
@@ -697,21 +637,15 @@ public class BugTrackerServer {
             http.halt(400, "No display name provided");
         }
 
+        // a blank password keeps the current one, and its hash
         String password = request.queryParams("password");
-        if (password == null || password.isEmpty()) {
-            http.halt(400, "No password provided");
-        }
-        if (!password.equals(request.queryParams("confirm"))) {
-            http.halt(400, "Password and confirmation do not match.");
+        String pwHash = null;
+        if (password != null && !password.isEmpty()) {
+            if (!password.equals(request.queryParams("confirm"))) {
+                http.halt(400, "Password and confirmation do not match.");
+            }
+            pwHash = awaitHash(() -> hasher.hash(password));
         }
-        String pwHash = BCrypt.hashpw(password, BCrypt.gensalt(10));
-
-        String updateQuery  = "UPDATE users  \n" +
-                "    SET user_name = ?\n" +
-                "      , user_email = ?\n" +
-                "      , display_name = ?\n" +
-                "      , user_password = ?\n" +
-                "      WHERE user_id =  ?  ";
 
         try (Connection cxn = pool.getConnection()) {
             // put in the URL
@@ -722,15 +656,26 @@ public class BugTrackerServer {
                 int retryCount = 5;
                 while (retryCount > 0) {
                     try {
-                        try (PreparedStatement stmt = cxn.prepareStatement(updateQuery)) {
-                            stmt.setString(1, userName);
-                            stmt.setString(2, email);
-                            stmt.setString(3, displayName);
-                            stmt.setString(4, pwHash);
-                            stmt.setInt(5, user.getUser_id());
-                            stmt.execute();
+                        if (pwHash != null) {
+                            try (PreparedStatement stmt = cxn.prepareStatement(Queries.UPDATE_USER)) {
+                                stmt.setString(1, userName);
+                                stmt.setString(2, email);
+                                stmt.setString(3, displayName);
+                                stmt.setString(4, pwHash);
+                                stmt.setInt(5, user.getUser_id());
+                                stmt.execute();
+                            }
+                        } else {
+                            try (PreparedStatement stmt = cxn.prepareStatement(Queries.UPDATE_USER_PROFILE)) {
+                                stmt.setString(1, userName);
+                                stmt.setString(2, email);
+                                stmt.setString(3, displayName);
+                                stmt.setInt(4, user.getUser_id());
+                                stmt.execute();
+                            }
                         }
                         cxn.commit();
+                        userCache.invalidate(user.getUser_id());
                         succeeded = true;
                         retryCount = 0;
                         logger.info("successfully updated user");
@@ -785,79 +730,67 @@ public class BugTrackerServer {
 
         String bugTags = request.queryParams("bug_tags");
         Set<String> tags = new HashSet<>();
-
-        for(String t : bugTags.split("\\s")){
-            tags.add(t);
-        }
-
-        int bugId = -1;
-        String insertQuery = "INSERT INTO bugs ( " +
-                "bug_title , " +
-                "bug_body , " +
-                "bug_status , " +
-                "create_date , " +
-                "close_date , " +
-                "user_id , " +
-                "milestone_id) " +
-                "VALUES (?,?,?,?,?,?,?)" +
-                "RETURNING bug_id";
-
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(insertQuery)) {
-            stmt.setString(1, bugTitle);
-            stmt.setString(2, bugBody);
-            stmt.setString(3, bugStatus);
-            stmt.setDate(4, new java.sql.Date(new Date().getTime()));
-            stmt.setDate(5, null);
-            stmt.setInt(6, user.getUser_id());
-            stmt.setObject(7, null);
-
-            stmt.execute();
-            try (ResultSet rs = stmt.getResultSet()) {
-                rs.next();
-                bugId = rs.getInt(1);
+        if (bugTags != null) {
+            for (String t : bugTags.split("\\s+")) {
+                if (!t.isEmpty()) {
+                    tags.add(t);
+                }
             }
+        }
 
-        //Lets add some tags!!
-
-        String insertTagQuery = "insert into tags (tag) \n" +
-                "values ( ? );";
-        String selectTagQuery = "select tag_id from tags where tag = ?; ";
-
-        String insertTagBugXref = "insert into tag_bug_xref (tag_id, bug_id) \n" +
-                "values ( ?, ? ) ";
-
-
-            for(String tag : tags){
-                try(PreparedStatement insStatement = cxn.prepareStatement(insertTagQuery);PreparedStatement selStmt = cxn.prepareStatement(selectTagQuery)) {
-                    insStatement.setString(1, tag);
-                    try{
-                        insStatement.execute();
-                    }
-                    catch (Exception ex){
+        int bugId;
 
+        // the bug, its tags and its search vector go in together or not at all
+        try (Connection cxn = pool.getConnection()) {
+            cxn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = cxn.prepareStatement(Queries.INSERT_BUG)) {
+                    stmt.setString(1, bugTitle);
+                    stmt.setString(2, bugBody);
+                    stmt.setString(3, bugStatus);
+                    stmt.setDate(4, new java.sql.Date(new Date().getTime()));
+                    stmt.setDate(5, null);
+                    stmt.setInt(6, user.getUser_id());
+                    stmt.setObject(7, null);
+
+                    stmt.execute();
+                    try (ResultSet rs = stmt.getResultSet()) {
+                        rs.next();
+                        bugId = rs.getInt(1);
                     }
+                }
 
-                    selStmt.setString(1, tag);
-                    selStmt.execute();
-
-                    try (ResultSet rs = selStmt.getResultSet()) {
-                        if (!rs.next()) {
-                            http.halt(500, "Failed to create tag.");
-                        }
-                        int tag_id = rs.getInt("tag_id");
-                        try (PreparedStatement xref_stmt = cxn.prepareStatement(insertTagBugXref)) {
-                            xref_stmt.setInt(1, tag_id);
-                            xref_stmt.setInt(2, bugId);
-                            try {
-                                xref_stmt.execute();
-                            }
-                            catch (Exception ex){
-                                http.halt(500, "Failed to add tags to bug. " + ex.getMessage());
-                            }
-                        }
+                // only tags the dictionary has not seen need a trip to the tags table
+                Map<String, Integer> tagIds = new HashMap<>();
+                Set<String> newTags = new HashSet<>();
+                for (String tag : tags) {
+                    Integer tagId = tagDictionary.getId(tag);
+                    if (tagId != null) {
+                        tagIds.put(tag, tagId);
+                    } else {
+                        newTags.add(tag);
                     }
                 }
+                tagIds.putAll(TagWriter.upsertTags(cxn, newTags));
+                if (!tagIds.isEmpty()) {
+                    UserFeed.lockTags(cxn, tagIds.values());
+                }
+                TagWriter.tagBug(cxn, bugId, tagIds.values());
+                if (!tagIds.isEmpty()) {
+                    UserFeed.fanOut(cxn, bugId);
+                }
+                BugSearch.reindex(cxn, bugId);
+                cxn.commit();
+                // a rolled-back tag must not reach the dictionary
+                for (Map.Entry<String, Integer> e : tagIds.entrySet()) {
+                    tagDictionary.put(e.getValue(), e.getKey());
+                }
+                publishBug("bug.created", bugId, bugTitle, bugStatus, tags);
+            } catch (SQLException | RuntimeException ex) {
+                cxn.rollback();
+                throw ex;
+            } finally {
+                cxn.setAutoCommit(true);
             }
         }
 
@@ -885,23 +818,19 @@ public class BugTrackerServer {
         }
 
         int milestoneId = -1;
-        String insertQuery = "INSERT INTO milestones " +
-                "(milestone_name, milestone_description) \n" +
-                "    VALUES ( ?, ? ) " +
-                "RETURNING milestone_id;";
 
         try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(insertQuery)) {
+             PreparedStatement stmt = cxn.prepareStatement(Queries.INSERT_MILESTONE)) {
             stmt.setString(1, milestoneName);
             stmt.setString(2, milestoneDesc);
 
-
             stmt.execute();
             try (ResultSet rs = stmt.getResultSet()) {
                 rs.next();
                 milestoneId = rs.getInt(1);
             }
         }
+        publishMilestone("milestone.created", milestoneId, milestoneName);
 
         response.redirect("/milestone/" + milestoneId, 303);
         return "Milestone Added";
@@ -921,37 +850,31 @@ public class BugTrackerServer {
             http.halt(400, "No tag provided");
         }
 
-        int tagId = -1;
-
-        String getTagQuery = "SELECT aa.tag_id " +
-                "FROM tags aa "  +
-                "WHERE aa.tag = ? ;";
-
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(getTagQuery)) {
-            stmt.setString(1, tag_name);
-            stmt.execute();
-            ResultSet rs = stmt.executeQuery();
-            if(!rs.next()){
-                http.halt(500, "Tag not found");
+        try (Connection cxn = pool.getConnection()) {
+            Integer tagId = tagDictionary.getId(tag_name);
+            if (tagId == null) {
+                // may have been created by another server
+                tagDictionary.loadIds(cxn, Collections.singletonList(tag_name));
+                tagId = tagDictionary.getId(tag_name);
+            }
+            if (tagId == null) {
+                http.halt(404, "Tag not found");
             }
-            tagId = rs.getInt("tag_id");
-        }
-
-        if(tagId == -1)
-            http.halt(500, "Tag not found");
-
-        String insertQuery = "INSERT INTO user_tag_subscription (user_id, tag_id)\n" +
-                "VALUES (? , ?);";
 
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(insertQuery)) {
-            stmt.setInt(1, user.getUser_id());
-            stmt.setInt(2, tagId);
+            cxn.setAutoCommit(false);
             try {
-                stmt.execute();
-            } catch(Exception ex){
-                //Ignoring constraint violations
+                if (!UserFeed.lockTag(cxn, tagId)) {
+                    http.halt(404, "Tag not found");
+                }
+                if (UserFeed.subscribe(cxn, user.getUser_id(), tagId)) {
+                    UserFeed.backfill(cxn, user.getUser_id(), tagId);
+                }
+                cxn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                cxn.rollback();
+                throw ex;
+            } finally {
+                cxn.setAutoCommit(true);
             }
         }
 
@@ -959,7 +882,6 @@ public class BugTrackerServer {
         return "Subscribed to tag";
     }
 
-
     //////////////////////////////////////////////////////////
     /// End Post Routes Section //////////////////////////////
     //////////////////////////////////////////////////////////
@@ -968,6 +890,223 @@ public class BugTrackerServer {
     /// Begin Helper Section /////////////////////////////////
     //////////////////////////////////////////////////////////
 
+    //Register timed routes.
+    private void getPage(String path, TemplateViewRoute route) {
+        http.get(path, metrics.timed("GET", path, route, engine));
+    }
+
+    private void get(String path, Route route) {
+        http.get(path, metrics.timed("GET", path, route));
+    }
+
+    // Every POST may write, so the session reads from the primary for a while afterwards.
+    private void post(String path, Route route) {
+        http.post(path, metrics.timed("POST", path, (request, response) -> {
+            try {
+                return route.handle(request, response);
+            } finally {
+                router.markWrite(request);
+            }
+        }));
+    }
+
+    /**
+     * Wait for a password hashing job, shedding the request with a 503 if the hashing
+     * pool is saturated.
+     */
+    private <T> T awaitHash(Supplier<CompletableFuture<T>> job) {
+        CompletableFuture<T> future = null;
+        try {
+            future = job.get();
+            return future.get(hashTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException ex) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            logger.warn("password hashing is saturated: {}", ex.toString());
+            http.halt(503, "Server busy, please try again shortly.");
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for password hash", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("password hashing failed", ex.getCause());
+        }
+    }
+
+    // Upgrade a hash made at an old cost.  The login does not wait for it: the new hash
+    // is stored on the rehash thread, which borrows a connection of its own, so neither
+    // the request thread nor a hashing thread holds one.  If either is busy the upgrade
+    // is left for a later login.
+    private void rehash(long userId, String password, String oldHash) {
+        CompletableFuture<String> newHash;
+        try {
+            newHash = hasher.hash(password);
+        } catch (RejectedExecutionException ex) {
+            logger.debug("hashing pool busy, not upgrading hash for user {}", userId);
+            return;
+        }
+        newHash.thenAcceptAsync(hash -> storeRehash(userId, hash, oldHash), rehashExecutor)
+               .whenComplete((ignored, ex) -> {
+                   if (ex != null) {
+                       logger.warn("could not upgrade password hash for user {}: {}", userId, ex.toString());
+                   }
+               });
+    }
+
+    private void storeRehash(long userId, String newHash, String oldHash) {
+        try (Connection cxn = pool.getConnection();
+             PreparedStatement stmt = cxn.prepareStatement(Queries.REHASH_USER_PASSWORD)) {
+            stmt.setString(1, newHash);
+            stmt.setLong(2, userId);
+            stmt.setString(3, oldHash);
+            stmt.executeUpdate();
+            logger.info("upgraded password hash for user {}", userId);
+        } catch (SQLException ex) {
+            logger.warn("could not upgrade password hash for user {}", userId, ex);
+        }
+    }
+
+    /**
+     * Get the request metrics, e.g. to add gauges to them.
+     */
+    public RouteMetrics getMetrics() {
+        return metrics;
+    }
+
+    // A gzip stream for exports that can be dropped part way through.  Aborting frees the
+    // compressor without writing the gzip trailer, so a failed export reaches the client
+    // as a broken download rather than a well-formed but short one.
+    private static class ExportGzipStream extends GZIPOutputStream {
+        ExportGzipStream(OutputStream out) throws IOException {
+            super(out, 65536);
+        }
+
+        void abort() {
+            def.end();
+        }
+    }
+
+    // Spark gzips a response body on the fly when Content-Encoding is gzip and the client
+    // accepts it.  Empty and already-written responses are left alone.
+    private void gzipResponse(Request request, Response response) {
+        HttpServletResponse raw = response.raw();
+        if (raw.getStatus() != 200 || raw.isCommitted() || raw.getHeader("Content-Encoding") != null
+                || !AssetPipeline.acceptsGzip(request)) {
+            return;
+        }
+        String type = raw.getContentType();
+        // no type yet means Spark's default, text/html
+        if (type == null || type.startsWith("text/") || type.startsWith("application/json")) {
+            response.header("Content-Encoding", "gzip");
+            response.header("Vary", "Accept-Encoding");
+        }
+    }
+
+    String eventTicket(Request request, Response response) {
+        Session session = request.session(false);
+        Long userId = session == null ? null : session.attribute("userId");
+        if (userId == null) {
+            http.halt(401, "Not logged in");
+        }
+        response.type("text/plain");
+        response.header("Cache-Control", "no-store");
+        return events.issueTicket(userId.intValue());
+    }
+
+    // The topics a user's "feed" subscription stands for.
+    private Collection<String> feedTopics(int userId) {
+        List<String> topics = new ArrayList<>();
+        try (Connection cxn = pool.getConnection()) {
+            for (String tag : UserFeed.subscribedTags(cxn, userId)) {
+                topics.add("tag:" + tag);
+            }
+        } catch (SQLException ex) {
+            logger.warn("could not load tag subscriptions for user {}", userId, ex);
+        }
+        return topics;
+    }
+
+    // Tell live pages about a committed change to a bug.  Call this after commit, so
+    // clients that reload on the event see the change.
+    private void publishBug(String type, int bugId, String title, String status, Collection<String> tags) {
+        StringWriter json = new StringWriter();
+        try (JsonWriter out = new JsonWriter(json)) {
+            out.beginObject();
+            out.name("type").value(type);
+            out.name("id").value(bugId);
+            out.name("title").value(title);
+            out.name("status").value(status);
+            out.name("tags").beginArray();
+            for (String tag : tags) {
+                out.value(tag);
+            }
+            out.endArray();
+            out.endObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        List<String> topics = new ArrayList<>();
+        topics.add("bugs");
+        topics.add("bug:" + bugId);
+        for (String tag : tags) {
+            topics.add("tag:" + tag);
+        }
+        events.publish("bug:" + bugId, json.toString(), topics);
+    }
+
+    // Tell live pages about a committed change to a milestone.
+    private void publishMilestone(String type, int milestoneId, String name) {
+        StringWriter json = new StringWriter();
+        try (JsonWriter out = new JsonWriter(json)) {
+            out.beginObject();
+            out.name("type").value(type);
+            out.name("id").value(milestoneId);
+            out.name("name").value(name);
+            out.endObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        events.publish("milestone:" + milestoneId, json.toString(),
+                       Arrays.asList("milestones", "milestone:" + milestoneId));
+    }
+
+    // API clients get a 401 rather than the pages' redirect home.
+    private void requireApiUser(Request request, Response response) {
+        Session session = request.session(false);
+        if (session == null || session.attribute("userId") == null) {
+            response.type("application/json; charset=utf-8");
+            http.halt(401, "{\"error\":\"Not logged in\"}");
+        }
+    }
+
+    // Check a row's version against the request's If-None-Match, setting the page's validators.
+    // Returns true if the response is a 304 and the page should not be rendered.
+    private boolean checkVersion(Connection cxn, String versionQuery, String kind, int id, User user,
+                                 Request request, Response response) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(versionQuery)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    // let the full query report the missing row
+                    return false;
+                }
+                String etag = ConditionalGet.etag(kind, id, rs.getLong(1), user);
+                return ConditionalGet.notModified(request, response, etag, rs.getTimestamp(2));
+            }
+        }
+    }
+
+    //Get the keyset page requested by the query string, rejecting bad cursors.
+    private PageRequest getPageRequest(Request request) {
+        try {
+            return PageRequest.fromRequest(request);
+        } catch (IllegalArgumentException ex) {
+            http.halt(400, "Invalid page request: " + ex.getMessage());
+            return null;
+        }
+    }
+
     //Get the user object and populate the map.
     private User getUser(Request request, Map<String, Object> fields) throws SQLException {
         Long uid = request.session().attribute("userId");
@@ -975,18 +1114,16 @@ public class BugTrackerServer {
             return null;
         }
 
-        User user = null;
-        String userQuery = "select\n" +
-                " aa.user_id\n" +
-                ",aa.user_name\n" +
-                ",aa.user_email\n" +
-                ",aa.display_name\n" +
-                ",aa.tag_id\n" +
-                ",aa.bug_id \n" +
-                "from users aa\n" +
-                "where aa.user_id = ?";
-        try (Connection cxn = pool.getConnection();
-             PreparedStatement stmt = cxn.prepareStatement(userQuery)) {
+        User user = userCache.get(uid);
+        if (user != null) {
+            fields.put("user", user);
+            return user;
+        }
+
+        // taken before the read, so an update that lands meanwhile keeps this load out of the cache
+        long stamp = userCache.loadStamp();
+        try (Connection cxn = router.getReadConnection(request);
+             PreparedStatement stmt = cxn.prepareStatement(Queries.USER_BY_ID)) {
             stmt.setLong(1, uid);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -996,6 +1133,7 @@ public class BugTrackerServer {
                             , rs.getString("display_name")
                             , rs.getInt("tag_id")
                             , rs.getInt("bug_id"));
+                    userCache.put(uid, user, stamp);
                 }
             }
         }
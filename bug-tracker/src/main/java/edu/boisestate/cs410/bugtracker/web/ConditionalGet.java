@@ -0,0 +1,96 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import spark.Request;
+import spark.Response;
+
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Conditional GET support for pages rendered from a versioned row.
+ *
+ * The ETag combines the row's version with the viewing user, whose name appears on
+ * every page, and with the server's start time, so that a deploy with new templates
+ * invalidates cached pages.  ETags are weak because the response may be compressed.
+ *
+ * Clients that do not send {@code If-None-Match} are answered from {@code If-Modified-Since},
+ * which cannot see the user.  A page's Last-Modified is therefore never before the server
+ * start, but a renamed user may see their old name on such a client until the row changes.
+ */
+public class ConditionalGet {
+    private static final long STARTED_MILLIS = System.currentTimeMillis();
+    private static final String STARTED = Long.toString(STARTED_MILLIS, 36);
+    // the IMF-fixdate format HTTP requires of senders; RFC_1123_DATE_TIME does not pad the day
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Build the ETag of a page.
+     * @param kind The kind of page, e.g. {@code bug}.
+     * @param id The id of the row the page shows.
+     * @param version The row's version.
+     * @param user The user viewing the page.
+     */
+    public static String etag(String kind, int id, long version, User user) {
+        int userHash = Objects.hash(user.getUser_name(), user.getDisplay_name());
+        return "W/\"" + kind + id + "-" + version + "-" + user.getUser_id() + "-"
+                + Integer.toHexString(userHash) + "-" + STARTED + "\"";
+    }
+
+    /**
+     * Set the page's validators and check them against the request's {@code If-None-Match},
+     * or failing that its {@code If-Modified-Since}.  If the client's copy is current, the
+     * response status is set to 304 and the caller should send no body.
+     * @param etag The page's ETag.
+     * @param modified When the row last changed.
+     * @return {@code true} if the client's copy is current.
+     */
+    public static boolean notModified(Request request, Response response, String etag, Timestamp modified) {
+        response.header("ETag", etag);
+        // HTTP dates are whole seconds
+        long lastModified = Math.max(modified.getTime(), STARTED_MILLIS) / 1000;
+        response.header("Last-Modified", HTTP_DATE.format(Instant.ofEpochSecond(lastModified)));
+        // pages are per user, and must be revalidated on every view
+        response.header("Cache-Control", "private, no-cache");
+
+        String ifNoneMatch = request.headers("If-None-Match");
+        if (ifNoneMatch != null) {
+            String opaque = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                    response.status(304);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // only consulted without If-None-Match (RFC 7232, section 6)
+        String ifModifiedSince = request.headers("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                Instant since = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifModifiedSince.trim()));
+                if (lastModified <= since.getEpochSecond()) {
+                    response.status(304);
+                    return true;
+                }
+            } catch (DateTimeException ex) {
+                // an invalid date is ignored
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
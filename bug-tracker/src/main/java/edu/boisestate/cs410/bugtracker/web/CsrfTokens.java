@@ -0,0 +1,38 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import spark.Request;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Per-session CSRF tokens.
+ */
+public class CsrfTokens {
+    private CsrfTokens() {
+    }
+
+    /**
+     * Generate a fresh random token.
+     */
+    public static String newToken() {
+        SecureRandom rng = new SecureRandom();
+        byte[] bytes = new byte[8];
+        rng.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Get the session's CSRF token, creating it if needed, and put it in the page fields.
+     */
+    public static String initToken(Request request, Map<String, Object> fields) {
+        String token = request.session().attribute("csrf_token");
+        if (token == null) {
+            token = newToken();
+            request.session(true).attribute("csrf_token", token);
+        }
+        fields.put("csrf_token", token);
+        return token;
+    }
+}
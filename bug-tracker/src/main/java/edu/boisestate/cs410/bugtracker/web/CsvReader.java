@@ -0,0 +1,108 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one record at a time.
+ *
+ * Quoted fields may contain commas, doubled quotes and line breaks.  Records end
+ * with either CRLF or LF.
+ */
+public class CsvReader {
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+    private int peeked = -2;
+    private long line = 1;
+    private long recordLine;
+
+    /**
+     * Create a reader.  The reader does its own look-ahead, so {@code in} should be buffered.
+     */
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the next record.
+     * @return The record's fields, or {@code null} at the end of the input.
+     * @throws IllegalArgumentException if a quoted field is malformed; the next call
+     *         starts on the following line.
+     */
+    public String[] next() throws IOException {
+        if (peek() < 0) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        while (true) {
+            field.setLength(0);
+            int c = read();
+            if (c == '"') {
+                quoted();
+                c = read();
+            } else {
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+            if (c == ',') {
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            } else if (c >= 0 && c != '\n' && c != '\r') {
+                long bad = line;
+                // skip the rest of the line, so the next record starts cleanly
+                while (c >= 0 && c != '\n') {
+                    c = read();
+                }
+                throw new IllegalArgumentException("unexpected character after quoted field on line " + bad);
+            }
+            return fields.toArray(new String[fields.size()]);
+        }
+    }
+
+    /**
+     * The line on which the last record returned by {@link #next} started.
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private void quoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IllegalArgumentException("unterminated quoted field starting on line " + recordLine);
+            }
+            if (c == '"') {
+                if (peek() != '"') {
+                    return;
+                }
+                read();
+            }
+            field.append((char) c);
+        }
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = in.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,292 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Fans bug events out to WebSocket subscribers.
+ *
+ * Clients subscribe to topics: {@code bugs} (every new bug), {@code milestones},
+ * {@code tag:NAME}, {@code milestone:ID}, {@code bug:ID}, or {@code feed}, which
+ * stands for the tags the user is subscribed to.  Publishing only queues the event;
+ * a dispatcher thread hands it to each matching subscriber.
+ *
+ * Each subscriber has at most one send in flight and a bounded set of pending
+ * messages.  A pending message is replaced by a newer one with the same key, so a
+ * bug edited twice before the client catches up is sent once.  A subscriber that
+ * falls too far behind is disconnected; the client reconnects and reloads.
+ */
+public class EventHub {
+    private static final Logger logger = LoggerFactory.getLogger(EventHub.class);
+    private static final long TICKET_MILLIS = 60000;
+    private static final int MAX_TOPICS = 100;
+
+    private final BlockingQueue<Event> events;
+    private final int maxPending;
+    private final ConcurrentMap<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder droppedSubscribers = new LongAdder();
+    private final Function<Integer, Collection<String>> feedTopics;
+
+    /**
+     * Create a hub.
+     * @param queueSize The number of published events that may wait for the dispatcher.
+     * @param maxPending The number of messages a subscriber may fall behind before it is dropped.
+     * @param feedTopics Looks up the topics of a user's {@code feed}.
+     */
+    public EventHub(int queueSize, int maxPending, Function<Integer, Collection<String>> feedTopics) {
+        this.events = new ArrayBlockingQueue<>(queueSize);
+        this.maxPending = maxPending;
+        this.feedTopics = feedTopics;
+    }
+
+    /**
+     * Start the dispatcher thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this::dispatch, "event-hub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Publish an event.  This never blocks; if the dispatcher is that far behind, the
+     * event is dropped.
+     * @param key Identifies what the event is about, e.g. {@code bug:42}; a newer event
+     *            with the same key replaces one a subscriber has not been sent yet.
+     * @param json The message to send.
+     * @param topics The topics to send it to.
+     */
+    public void publish(String key, String json, Collection<String> topics) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (!events.offer(new Event(key, json, new ArrayList<>(topics)))) {
+            droppedEvents.increment();
+            logger.warn("event queue full, dropping event {}", key);
+        }
+    }
+
+    /**
+     * Issue a one-time ticket that lets a logged in user open a WebSocket.
+     * The socket cannot see the page session, so the page fetches a ticket first.
+     */
+    public String issueTicket(int userId) {
+        long now = System.currentTimeMillis();
+        tickets.values().removeIf(t -> t.expires < now);
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, new Ticket(userId, now + TICKET_MILLIS));
+        return ticket;
+    }
+
+    /**
+     * Redeem a ticket.
+     * @return The ticket's user, or {@code null} if the ticket is unknown, used or expired.
+     */
+    public Integer redeemTicket(String ticket) {
+        Ticket t = ticket == null ? null : tickets.remove(ticket);
+        if (t == null || t.expires < System.currentTimeMillis()) {
+            return null;
+        }
+        return t.userId;
+    }
+
+    void connect(Session session, int userId) {
+        subscribers.put(session, new Subscriber(session, userId));
+    }
+
+    void disconnect(Session session) {
+        Subscriber subscriber = subscribers.remove(session);
+        if (subscriber != null) {
+            for (String topic : subscriber.topics) {
+                unsubscribe(subscriber, topic);
+            }
+        }
+    }
+
+    /**
+     * Subscribe a connection to topics.
+     * @throws IllegalArgumentException if a topic is malformed or there are too many.
+     */
+    void subscribe(Session session, Collection<String> names) {
+        Subscriber subscriber = subscribers.get(session);
+        if (subscriber == null) {
+            return;
+        }
+        Set<String> wanted = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name.equals("feed")) {
+                wanted.addAll(feedTopics.apply(subscriber.userId));
+            } else {
+                checkTopic(name);
+                wanted.add(name);
+            }
+        }
+        if (subscriber.topics.size() + wanted.size() > MAX_TOPICS) {
+            throw new IllegalArgumentException("at most " + MAX_TOPICS + " topics per connection");
+        }
+        for (String topic : wanted) {
+            if (subscriber.topics.add(topic)) {
+                topics.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        }
+    }
+
+    void unsubscribe(Session session, Collection<String> names) {
+        Subscriber subscriber = subscribers.get(session);
+        if (subscriber != null) {
+            for (String name : names) {
+                if (subscriber.topics.remove(name)) {
+                    unsubscribe(subscriber, name);
+                }
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber, String topic) {
+        topics.computeIfPresent(topic, (t, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static void checkTopic(String topic) {
+        if (topic.equals("bugs") || topic.equals("milestones")
+                || topic.matches("(bug|milestone):\\d{1,10}") || topic.matches("tag:\\S{1,100}")) {
+            return;
+        }
+        throw new IllegalArgumentException("unknown topic " + topic);
+    }
+
+    public int getConnectionCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    public long getDroppedSubscribers() {
+        return droppedSubscribers.sum();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Event event;
+            try {
+                event = events.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            // a subscriber to several of the event's topics gets it once
+            Set<Subscriber> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (String topic : event.topics) {
+                Set<Subscriber> set = topics.get(topic);
+                if (set != null) {
+                    targets.addAll(set);
+                }
+            }
+            for (Subscriber subscriber : targets) {
+                if (!subscriber.offer(event.key, event.json)) {
+                    droppedSubscribers.increment();
+                    logger.info("dropping slow subscriber for user {}", subscriber.userId);
+                    disconnect(subscriber.session);
+                    subscriber.session.close(StatusCode.TRY_AGAIN_LATER, "too far behind");
+                }
+            }
+        }
+    }
+
+    private static class Event {
+        final String key;
+        final String json;
+        final List<String> topics;
+
+        Event(String key, String json, List<String> topics) {
+            this.key = key;
+            this.json = json;
+            this.topics = topics;
+        }
+    }
+
+    private static class Ticket {
+        final int userId;
+        final long expires;
+
+        Ticket(int userId, long expires) {
+            this.userId = userId;
+            this.expires = expires;
+        }
+    }
+
+    private class Subscriber implements WriteCallback {
+        final Session session;
+        final int userId;
+        final Set<String> topics = ConcurrentHashMap.newKeySet();
+        // guarded by this
+        private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+        private boolean sending;
+
+        Subscriber(Session session, int userId) {
+            this.session = session;
+            this.userId = userId;
+        }
+
+        /**
+         * Queue a message, replacing any pending one with the same key.
+         * @return {@code false} if the subscriber is too far behind.
+         */
+        synchronized boolean offer(String key, String json) {
+            // re-insert so a replaced message moves to the back of the line
+            pending.remove(key);
+            pending.put(key, json);
+            if (pending.size() > maxPending) {
+                pending.clear();
+                return false;
+            }
+            if (!sending) {
+                sendNext();
+            }
+            return true;
+        }
+
+        // Start sending the oldest pending message; the caller holds the lock.
+        private void sendNext() {
+            Iterator<Map.Entry<String, String>> it = pending.entrySet().iterator();
+            if (!it.hasNext()) {
+                sending = false;
+                return;
+            }
+            String json = it.next().getValue();
+            it.remove();
+            sending = true;
+            session.getRemote().sendString(json, this);
+        }
+
+        @Override
+        public synchronized void writeSuccess() {
+            sendNext();
+        }
+
+        @Override
+        public synchronized void writeFailed(Throwable ex) {
+            logger.debug("send to user {} failed", userId, ex);
+            pending.clear();
+            sending = false;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The JSON API under {@code /api/v1}.
+ *
+ * Rows are written to the response as the driver fetches them, through a cursor
+ * of {@code api.fetchSize} rows, so no response is held in memory.  Lists page
+ * forward only: each page ends with the URL of the {@code next} page, or null.
+ * The {@code fields} parameter (e.g. {@code fields=id,title,tags}) selects the
+ * members written for each item.
+ */
+public class JsonApi {
+    private static final List<String> BUG_FIELDS = Arrays.asList(
+            "id", "title", "body", "status", "create_date", "close_date", "user_id", "milestone_id", "tags");
+    private static final List<String> SEARCH_FIELDS = Arrays.asList(
+            "id", "title", "body", "status", "create_date", "close_date", "user_id", "milestone_id", "tags", "rank");
+    private static final List<String> MILESTONE_FIELDS = Arrays.asList(
+            "id", "name", "description", "open_count", "closed_count");
+    private static final List<String> TAG_FIELDS = Arrays.asList("id", "name");
+
+    private final ReplicaRouter router;
+    private final TagDictionary tagDictionary;
+    private final Service http;
+    private final int maxPageSize;
+    private final int fetchSize;
+
+    public JsonApi(ReplicaRouter router, TagDictionary tagDictionary, Service http, Settings settings) {
+        this.router = router;
+        this.tagDictionary = tagDictionary;
+        this.http = http;
+        maxPageSize = settings.getInt("api.maxPageSize", 1000);
+        fetchSize = settings.getInt("api.fetchSize", 100);
+    }
+
+    String bugs(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, BUG_FIELDS);
+        PageRequest pageRequest = getPageRequest(request, response);
+        String query = pageRequest.format(Queries.API_BUG_PAGE, "aa.create_date", "aa.bug_id", "date");
+        String baseUrl = "/api/v1/bugs?" + fieldsParam(request);
+        try (Connection cxn = router.getReadConnection(request)) {
+            cxn.setAutoCommit(false);
+            try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+                pageRequest.bind(stmt, 1);
+                streamPage(cxn, stmt, pageRequest, 5, baseUrl, request, response,
+                           (rs, json) -> writeBug(cxn, rs, fields, json));
+            } finally {
+                cxn.rollback();
+                cxn.setAutoCommit(true);
+            }
+        }
+        return "";
+    }
+
+    String bug(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, BUG_FIELDS);
+        int bugId = getId(request, response, "bugid");
+        try (Connection cxn = router.getReadConnection(request);
+             PreparedStatement stmt = cxn.prepareStatement(Queries.API_BUG_BY_ID)) {
+            stmt.setInt(1, bugId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    halt(response, 404, "No bug " + bugId);
+                }
+                try (JsonWriter json = open(request, response)) {
+                    writeBug(cxn, rs, fields, json);
+                }
+            }
+        }
+        return "";
+    }
+
+    String search(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, SEARCH_FIELDS);
+        String terms = request.queryParams("q");
+        if (terms == null || terms.trim().isEmpty()) {
+            halt(response, 400, "No search terms provided");
+        }
+        PageRequest pageRequest = getPageRequest(request, response);
+        String query = pageRequest.format(Queries.API_SEARCH_PAGE, "rank", "bug_id", "real");
+        String baseUrl = "/api/v1/search?q=" + PageRequest.encode(terms) + "&" + fieldsParam(request);
+        try (Connection cxn = router.getReadConnection(request)) {
+            cxn.setAutoCommit(false);
+            try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+                stmt.setString(1, terms);
+                pageRequest.bind(stmt, 2);
+                streamPage(cxn, stmt, pageRequest, 10, baseUrl, request, response, (rs, json) -> {
+                    json.beginObject();
+                    writeBugFields(cxn, rs, fields, json);
+                    if (fields.contains("rank")) {
+                        json.name("rank").value(rs.getDouble(10));
+                    }
+                    json.endObject();
+                });
+            } finally {
+                cxn.rollback();
+                cxn.setAutoCommit(true);
+            }
+        }
+        return "";
+    }
+
+    String milestones(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, MILESTONE_FIELDS);
+        try (Connection cxn = router.getReadConnection(request)) {
+            cxn.setAutoCommit(false);
+            try (PreparedStatement stmt = cxn.prepareStatement(Queries.MILESTONE_LIST)) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery();
+                     JsonWriter json = open(request, response)) {
+                    json.beginObject().name("items").beginArray();
+                    while (rs.next()) {
+                        writeMilestone(rs, fields, json);
+                    }
+                    json.endArray().endObject();
+                }
+            } finally {
+                cxn.rollback();
+                cxn.setAutoCommit(true);
+            }
+        }
+        return "";
+    }
+
+    String milestone(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, MILESTONE_FIELDS);
+        int milestoneId = getId(request, response, "milestoneid");
+        try (Connection cxn = router.getReadConnection(request);
+             PreparedStatement stmt = cxn.prepareStatement(Queries.MILESTONE_BY_ID)) {
+            stmt.setInt(1, milestoneId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    halt(response, 404, "No milestone " + milestoneId);
+                }
+                try (JsonWriter json = open(request, response)) {
+                    writeMilestone(rs, fields, json);
+                }
+            }
+        }
+        return "";
+    }
+
+    String milestoneBugs(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, BUG_FIELDS);
+        int milestoneId = getId(request, response, "milestoneid");
+        PageRequest pageRequest = getPageRequest(request, response);
+        String query = pageRequest.format(Queries.API_MILESTONE_BUG_PAGE, "aa.create_date", "aa.bug_id", "date");
+        String baseUrl = "/api/v1/milestones/" + milestoneId + "/bugs?" + fieldsParam(request);
+        try (Connection cxn = router.getReadConnection(request)) {
+            cxn.setAutoCommit(false);
+            try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+                stmt.setInt(1, milestoneId);
+                pageRequest.bind(stmt, 2);
+                streamPage(cxn, stmt, pageRequest, 5, baseUrl, request, response,
+                           (rs, json) -> writeBug(cxn, rs, fields, json));
+            } finally {
+                cxn.rollback();
+                cxn.setAutoCommit(true);
+            }
+        }
+        return "";
+    }
+
+    String tags(Request request, Response response) throws SQLException, IOException {
+        Set<String> fields = getFields(request, response, TAG_FIELDS);
+        PageRequest pageRequest = getPageRequest(request, response);
+        String query = pageRequest.format(Queries.API_TAG_PAGE, "tag_id", "tag_id", "int4");
+        String baseUrl = "/api/v1/tags?" + fieldsParam(request);
+        try (Connection cxn = router.getReadConnection(request)) {
+            cxn.setAutoCommit(false);
+            try (PreparedStatement stmt = cxn.prepareStatement(query)) {
+                pageRequest.bind(stmt, 1);
+                streamPage(cxn, stmt, pageRequest, 1, baseUrl, request, response, (rs, json) -> {
+                    json.beginObject();
+                    if (fields.contains("id")) {
+                        json.name("id").value(rs.getInt(1));
+                    }
+                    if (fields.contains("name")) {
+                        json.name("name").value(rs.getString(2));
+                    }
+                    json.endObject();
+                });
+            } finally {
+                cxn.rollback();
+                cxn.setAutoCommit(true);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Run a page query and stream its rows as {@code {"items": [...], "next": url}}.
+     * The query fetches one row more than the page, which only tells us there is a next page.
+     * The connection must have autocommit off, so the driver fetches through a cursor.
+     * @param keyColumn The column holding each row's sort key; the row id is column 1.
+     */
+    private void streamPage(Connection cxn, PreparedStatement stmt, PageRequest pageRequest, int keyColumn,
+                            String baseUrl, Request request, Response response,
+                            RowWriter rowWriter) throws SQLException, IOException {
+        stmt.setFetchSize(Math.min(fetchSize, pageRequest.getSize() + 1));
+        try (ResultSet rs = stmt.executeQuery();
+             JsonWriter json = open(request, response)) {
+            json.beginObject().name("items").beginArray();
+            int count = 0;
+            String lastKey = null;
+            int lastId = 0;
+            boolean more = false;
+            while (rs.next()) {
+                if (count == pageRequest.getSize()) {
+                    more = true;
+                    break;
+                }
+                rowWriter.write(rs, json);
+                lastKey = rs.getString(keyColumn);
+                lastId = rs.getInt(1);
+                count++;
+            }
+            json.endArray();
+            json.name("next");
+            if (more) {
+                json.value(baseUrl + "size=" + pageRequest.getSize() + "&after="
+                           + PageRequest.encode(lastKey + "_" + lastId));
+            } else {
+                json.nullValue();
+            }
+            json.endObject();
+        }
+    }
+
+    // Write a bug from the current row of one of the API_ bug queries.
+    private void writeBug(Connection cxn, ResultSet rs, Set<String> fields, JsonWriter json) throws SQLException, IOException {
+        json.beginObject();
+        writeBugFields(cxn, rs, fields, json);
+        json.endObject();
+    }
+
+    private void writeBugFields(Connection cxn, ResultSet rs, Set<String> fields, JsonWriter json) throws SQLException, IOException {
+        if (fields.contains("id")) {
+            json.name("id").value(rs.getInt(1));
+        }
+        if (fields.contains("title")) {
+            json.name("title").value(rs.getString(2));
+        }
+        if (fields.contains("body")) {
+            json.name("body").value(rs.getString(3));
+        }
+        if (fields.contains("status")) {
+            json.name("status").value(rs.getString(4));
+        }
+        if (fields.contains("create_date")) {
+            json.name("create_date").value(rs.getString(5));
+        }
+        if (fields.contains("close_date")) {
+            json.name("close_date").value(rs.getString(6));
+        }
+        if (fields.contains("user_id")) {
+            json.name("user_id");
+            writeInt(rs, 7, json);
+        }
+        if (fields.contains("milestone_id")) {
+            json.name("milestone_id");
+            writeInt(rs, 8, json);
+        }
+        if (fields.contains("tags")) {
+            json.name("tags");
+            writeTags(cxn, rs.getArray(9), json);
+        }
+    }
+
+    // Write a milestone from the current row of MILESTONE_LIST or MILESTONE_BY_ID.
+    private void writeMilestone(ResultSet rs, Set<String> fields, JsonWriter json) throws SQLException, IOException {
+        json.beginObject();
+        if (fields.contains("id")) {
+            json.name("id").value(rs.getInt(1));
+        }
+        if (fields.contains("name")) {
+            json.name("name").value(rs.getString(2));
+        }
+        if (fields.contains("description")) {
+            json.name("description").value(rs.getString(3));
+        }
+        if (fields.contains("open_count")) {
+            json.name("open_count").value(rs.getInt(4));
+        }
+        if (fields.contains("closed_count")) {
+            json.name("closed_count").value(rs.getInt(5));
+        }
+        json.endObject();
+    }
+
+    // Write the names of an array of tag ids, sorted; names come from the dictionary.
+    private void writeTags(Connection cxn, Array tagIds, JsonWriter json) throws SQLException, IOException {
+        Integer[] ids = (Integer[]) tagIds.getArray();
+        tagIds.free();
+        List<Integer> unknown = new ArrayList<>();
+        for (Integer id : ids) {
+            if (tagDictionary.getName(id) == null) {
+                unknown.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            tagDictionary.loadNames(cxn, unknown);
+        }
+        String[] names = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            names[i] = tagDictionary.getName(ids[i]);
+        }
+        Arrays.sort(names);
+        json.beginArray();
+        for (String name : names) {
+            json.value(name);
+        }
+        json.endArray();
+    }
+
+    private static void writeInt(ResultSet rs, int column, JsonWriter json) throws SQLException, IOException {
+        int value = rs.getInt(column);
+        if (rs.wasNull()) {
+            json.nullValue();
+        } else {
+            json.value(value);
+        }
+    }
+
+    // Start the JSON body, compressed if the client accepts it.  Closing the writer
+    // completes the response, so Spark does not write (or compress) anything after it.
+    private JsonWriter open(Request request, Response response) throws IOException {
+        response.type("application/json; charset=utf-8");
+        OutputStream out = response.raw().getOutputStream();
+        if (AssetPipeline.acceptsGzip(request)) {
+            response.header("Content-Encoding", "gzip");
+            response.header("Vary", "Accept-Encoding");
+            out = new GZIPOutputStream(out, 8192);
+        }
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    // Get the requested fields, or all of them.
+    private Set<String> getFields(Request request, Response response, List<String> known) {
+        String param = request.queryParams("fields");
+        if (param == null || param.isEmpty()) {
+            return new HashSet<>(known);
+        }
+        Set<String> fields = new HashSet<>();
+        for (String field : param.split(",")) {
+            field = field.trim();
+            if (!known.contains(field)) {
+                halt(response, 400, "Unknown field " + field + ", expected some of " + String.join(",", known));
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    // The fields parameter to carry over into the next page's URL.
+    private static String fieldsParam(Request request) {
+        String param = request.queryParams("fields");
+        return param == null || param.isEmpty() ? "" : "fields=" + PageRequest.encode(param) + "&";
+    }
+
+    private PageRequest getPageRequest(Request request, Response response) {
+        PageRequest pageRequest = null;
+        try {
+            pageRequest = PageRequest.fromRequest(request, maxPageSize);
+        } catch (IllegalArgumentException ex) {
+            halt(response, 400, "Invalid page request: " + ex.getMessage());
+        }
+        if (pageRequest.isBackward()) {
+            halt(response, 400, "The API pages forward only; use the next URL");
+        }
+        return pageRequest;
+    }
+
+    private int getId(Request request, Response response, String param) {
+        try {
+            return Integer.parseInt(request.params(param));
+        } catch (NumberFormatException ex) {
+            halt(response, 400, "Invalid id " + request.params(param));
+            return 0;
+        }
+    }
+
+    private void halt(Response response, int status, String message) {
+        response.type("application/json; charset=utf-8");
+        http.halt(status, "{\"error\":" + JsonWriter.quote(message) + "}");
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs, JsonWriter json) throws SQLException, IOException;
+    }
+}
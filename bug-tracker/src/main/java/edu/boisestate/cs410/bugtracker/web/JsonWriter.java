@@ -0,0 +1,202 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A minimal streaming JSON writer.
+ *
+ * Values are written as they are given, so a response can be produced row by row
+ * without building it in memory first.  The writer tracks only the commas between
+ * members; it does not check that names and values are given in a valid order.
+ */
+public class JsonWriter implements Closeable, Flushable {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    // for each open object or array, whether it has a member yet
+    private boolean[] started = new boolean[8];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next object member.
+     */
+    public JsonWriter name(String name) throws IOException {
+        comma();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Write a number; JSON has no NaN or infinity, so those are written as {@code null}.
+     */
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write a value that is already JSON text, e.g. from the database's JSON functions.
+     */
+    public JsonWriter rawValue(String json) throws IOException {
+        if (json == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write(json);
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Quote a string as a JSON string literal.
+     */
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                // control characters, and the line separators JavaScript chokes on
+                if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                    sb.append("\\u")
+                      .append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf])
+                      .append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void string(String value) throws IOException {
+        // most values need no escaping, so check before copying
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029') {
+                out.write(quote(value));
+                return;
+            }
+        }
+        out.write('"');
+        out.write(value);
+        out.write('"');
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else {
+            comma();
+        }
+    }
+
+    private void comma() throws IOException {
+        if (depth > 0) {
+            if (started[depth - 1]) {
+                out.write(',');
+            }
+            started[depth - 1] = true;
+        }
+    }
+
+    private void push() {
+        if (depth == started.length) {
+            started = Arrays.copyOf(started, depth * 2);
+        }
+        started[depth++] = false;
+    }
+}
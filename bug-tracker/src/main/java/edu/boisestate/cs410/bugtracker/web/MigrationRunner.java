@@ -0,0 +1,237 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies versioned schema migrations from the classpath.
+ *
+ * Migrations live under {@code db/migration}, named {@code V<version>__<description>.sql}
+ * and listed in order in {@code index.txt}.  Each one runs in its own transaction and is
+ * recorded in {@code schema_version} with a checksum; a migration whose file has changed
+ * since it was applied stops startup.
+ */
+public class MigrationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+    private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    // arbitrary key for the advisory lock that keeps two servers from migrating at once
+    private static final long LOCK_KEY = 0x6275677472616b72L;
+
+    private final String location;
+
+    public MigrationRunner() {
+        this("db/migration");
+    }
+
+    public MigrationRunner(String location) {
+        this.location = location;
+    }
+
+    /**
+     * Apply every pending migration.
+     * @param cxn The connection to migrate through.
+     * @return The number of migrations applied.
+     * @throws IllegalStateException if an applied migration has been modified.
+     */
+    public int migrate(Connection cxn) throws SQLException, IOException {
+        List<Migration> migrations = loadMigrations();
+        // lock before any DDL: two servers racing CREATE TABLE IF NOT EXISTS can both fail
+        try (Statement stmt = cxn.createStatement()) {
+            stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+        }
+        try {
+            try (Statement stmt = cxn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (\n" +
+                             "    version INTEGER PRIMARY KEY NOT NULL,\n" +
+                             "    description VARCHAR(200) NOT NULL,\n" +
+                             "    checksum VARCHAR(64) NOT NULL,\n" +
+                             "    applied_on TIMESTAMP NOT NULL DEFAULT now(),\n" +
+                             "    execution_ms INTEGER NOT NULL\n" +
+                             ")");
+            }
+            Map<Integer, String> applied = appliedChecksums(cxn);
+            int count = 0;
+            for (Migration m : migrations) {
+                String checksum = applied.remove(m.version);
+                if (checksum == null) {
+                    apply(cxn, m);
+                    count++;
+                } else if (!checksum.equals(m.checksum)) {
+                    throw new IllegalStateException("migration " + m.name + " was modified after it was applied");
+                }
+            }
+            if (!applied.isEmpty()) {
+                logger.warn("database has migrations this build does not know: {}", applied.keySet());
+            }
+            logger.info("schema is at version {} ({} migrations applied now)",
+                        migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version, count);
+            return count;
+        } finally {
+            try (Statement stmt = cxn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        }
+    }
+
+    private Map<Integer, String> appliedChecksums(Connection cxn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = cxn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    private void apply(Connection cxn, Migration m) throws SQLException {
+        logger.info("applying migration {}", m.name);
+        long start = System.nanoTime();
+        boolean autoCommit = cxn.getAutoCommit();
+        cxn.setAutoCommit(false);
+        try {
+            try (Statement stmt = cxn.createStatement()) {
+                for (String sql : splitStatements(m.script)) {
+                    stmt.execute(sql);
+                }
+            }
+            try (PreparedStatement stmt = cxn.prepareStatement(
+                    "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, m.version);
+                stmt.setString(2, m.description);
+                stmt.setString(3, m.checksum);
+                stmt.setInt(4, (int) ((System.nanoTime() - start) / 1000000));
+                stmt.executeUpdate();
+            }
+            cxn.commit();
+        } catch (SQLException | RuntimeException ex) {
+            cxn.rollback();
+            throw new SQLException("migration " + m.name + " failed: " + ex.getMessage(), ex);
+        } finally {
+            cxn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Read the migrations listed in the index, in order.
+     */
+    List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        String index = read(location + "/index.txt");
+        int last = 0;
+        for (String line : index.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Matcher m = NAME.matcher(line);
+            if (!m.matches()) {
+                throw new IllegalStateException("bad migration name " + line);
+            }
+            int version = Integer.parseInt(m.group(1));
+            if (version <= last) {
+                throw new IllegalStateException("migration " + line + " is out of order");
+            }
+            last = version;
+            migrations.add(new Migration(version, m.group(2).replace('_', ' '), line,
+                                         read(location + "/" + line)));
+        }
+        return migrations;
+    }
+
+    private static String read(String resource) throws IOException {
+        try (InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("missing resource " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+            // checksums should not depend on how git checked the file out
+            return new String(out.toByteArray(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        }
+    }
+
+    /**
+     * Split a SQL script into statements.  Splits on semicolons, except inside
+     * {@code $$}-quoted function bodies and single-quoted strings (where {@code ''}
+     * is an escaped quote), and drops {@code --} comment lines.
+     */
+    public static List<String> splitStatements(String script) {
+        StringBuilder sql = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        boolean dollarQuoted = false;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!quoted && c == '$' && i + 1 < sql.length() && sql.charAt(i + 1) == '$') {
+                dollarQuoted = !dollarQuoted;
+                i++;
+            } else if (!dollarQuoted && c == '\'') {
+                // an escaped '' just closes and reopens the string
+                quoted = !quoted;
+            } else if (!quoted && !dollarQuoted && c == ';') {
+                String stmt = sql.substring(start, i).trim();
+                if (!stmt.isEmpty()) {
+                    statements.add(stmt);
+                }
+                start = i + 1;
+            }
+        }
+        String rest = sql.substring(start).trim();
+        if (!rest.isEmpty()) {
+            statements.add(rest);
+        }
+        return statements;
+    }
+
+    static class Migration {
+        final int version;
+        final String description;
+        final String name;
+        final String script;
+        final String checksum;
+
+        Migration(int version, String description, String name, String script) {
+            this.version = version;
+            this.description = description;
+            this.name = name;
+            this.script = script;
+            checksum = sha256(script);
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError("SHA-256 is always available", ex);
+        }
+    }
+}
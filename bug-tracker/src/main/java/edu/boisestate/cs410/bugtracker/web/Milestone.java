@@ -0,0 +1,44 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+/**
+ * A milestone with its bug counts.  Instances are immutable.
+ */
+public final class Milestone {
+    private final int id;
+    private final String name;
+    private final String description;
+    private final int openCount;
+    private final int closedCount;
+
+    public Milestone(int id, String name, String description, int openCount, int closedCount) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.openCount = openCount;
+        this.closedCount = closedCount;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    public int getClosedCount() {
+        return closedCount;
+    }
+
+    public int getBugCount() {
+        return openCount + closedCount;
+    }
+}
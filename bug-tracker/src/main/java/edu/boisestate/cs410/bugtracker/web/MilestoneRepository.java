@@ -0,0 +1,46 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads milestones for the pages.  Both queries return the same columns in the
+ * same order, so rows are read by position.
+ */
+public class MilestoneRepository {
+    /**
+     * Get a milestone.
+     * @return The milestone, or {@code null} if there is no such milestone.
+     */
+    public Milestone findById(Connection cxn, int milestoneId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.MILESTONE_BY_ID)) {
+            stmt.setInt(1, milestoneId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Get every milestone, in id order.
+     */
+    public List<Milestone> findAll(Connection cxn) throws SQLException {
+        List<Milestone> milestones = new ArrayList<>();
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.MILESTONE_LIST);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                milestones.add(read(rs));
+            }
+        }
+        return milestones;
+    }
+
+    // Read the current row of MILESTONE_BY_ID or MILESTONE_LIST.
+    private static Milestone read(ResultSet rs) throws SQLException {
+        return new Milestone(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4), rs.getInt(5));
+    }
+}
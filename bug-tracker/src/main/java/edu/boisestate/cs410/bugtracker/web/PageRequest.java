@@ -0,0 +1,227 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import spark.Request;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A keyset (cursor) page request for lists sorted newest first by a sort key and an id.
+ *
+ * Cursors are encoded as {@code key_id}, e.g. {@code 2016-11-22_42}.  The {@code after}
+ * parameter pages towards older rows and {@code before} pages back towards newer ones.
+ * Sort keys are ISO dates or numbers (search ranks); anything else is rejected up front,
+ * so a mangled cursor is the client's error rather than a failed query.
+ */
+public class PageRequest {
+    public static final int DEFAULT_SIZE = 25;
+    public static final int MAX_SIZE = 200;
+    // a sort key the database can cast to a number, as Float.toString writes them
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE]-?\\d+)?");
+
+    private final int size;
+    private final String cursorKey;
+    private final int cursorId;
+    private final boolean backward;
+
+    PageRequest(int size, String cursorKey, int cursorId, boolean backward) {
+        this.size = size;
+        this.cursorKey = cursorKey;
+        this.cursorId = cursorId;
+        this.backward = backward;
+    }
+
+    /**
+     * Read the {@code size}, {@code after} and {@code before} query parameters.
+     * @throws IllegalArgumentException if a parameter is malformed.
+     */
+    public static PageRequest fromRequest(Request request) {
+        return fromRequest(request, MAX_SIZE);
+    }
+
+    /**
+     * Read the {@code size}, {@code after} and {@code before} query parameters.
+     * @param maxSize The largest page size allowed; larger requests are cut down to it.
+     * @throws IllegalArgumentException if a parameter is malformed.
+     */
+    public static PageRequest fromRequest(Request request, int maxSize) {
+        int size = DEFAULT_SIZE;
+        String sizeParam = request.queryParams("size");
+        if (sizeParam != null && !sizeParam.isEmpty()) {
+            size = Integer.parseInt(sizeParam);
+            if (size < 1) {
+                throw new IllegalArgumentException("page size must be positive");
+            }
+            size = Math.min(size, maxSize);
+        }
+
+        String after = request.queryParams("after");
+        String before = request.queryParams("before");
+        if (after != null && !after.isEmpty()) {
+            return parse(size, after, false);
+        } else if (before != null && !before.isEmpty()) {
+            return parse(size, before, true);
+        } else {
+            return new PageRequest(size, null, 0, false);
+        }
+    }
+
+    private static PageRequest parse(int size, String cursor, boolean backward) {
+        int split = cursor.lastIndexOf('_');
+        if (split <= 0) {
+            throw new IllegalArgumentException("invalid page cursor " + cursor);
+        }
+        String key = cursor.substring(0, split);
+        if (!NUMBER.matcher(key).matches()) {
+            try {
+                LocalDate.parse(key);
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("invalid page cursor " + cursor, ex);
+            }
+        }
+        return new PageRequest(size, key, Integer.parseInt(cursor.substring(split + 1)), backward);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Query whether this request pages back towards newer rows.
+     */
+    public boolean isBackward() {
+        return backward;
+    }
+
+    /**
+     * The SQL condition selecting rows past the cursor, or {@code TRUE} on the first page.
+     * The condition has two parameters when there is a cursor; bind them with {@link #bind}.
+     * @param keyExpr The sort key expression.
+     * @param idExpr The id (tie breaker) expression.
+     * @param keyType The SQL type to cast the cursor key to.
+     */
+    public String where(String keyExpr, String idExpr, String keyType) {
+        if (cursorKey == null) {
+            return "TRUE";
+        }
+        return "(" + keyExpr + ", " + idExpr + ") " + (backward ? ">" : "<") +
+                " (CAST(? AS " + keyType + "), ?)";
+    }
+
+    /**
+     * The ORDER BY list, which runs backwards when paging to newer rows.
+     */
+    public String orderBy(String keyExpr, String idExpr) {
+        String dir = backward ? " ASC" : " DESC";
+        return keyExpr + dir + ", " + idExpr + dir;
+    }
+
+    /**
+     * Fill in a query template with the keyset condition and ORDER BY list.
+     * @param template A query with two {@code %s} slots, for the condition and the ordering.
+     * @see #where
+     * @see #orderBy
+     */
+    public String format(String template, String keyExpr, String idExpr, String keyType) {
+        return String.format(template, where(keyExpr, idExpr, keyType), orderBy(keyExpr, idExpr));
+    }
+
+    /**
+     * Bind the cursor parameters (if any) followed by the row limit.
+     * @return The next parameter index.
+     */
+    public int bind(PreparedStatement stmt, int index) throws SQLException {
+        if (cursorKey != null) {
+            stmt.setString(index++, cursorKey);
+            stmt.setInt(index++, cursorId);
+        }
+        // fetch one extra row so we know whether there is another page
+        stmt.setInt(index++, size + 1);
+        return index;
+    }
+
+    /**
+     * Trim and order the fetched rows and build the navigation links.
+     * @param rows The rows, as fetched with the limit from {@link #bind}.
+     * @param key Extracts the sort key of a row.
+     * @param id Extracts the id of a row.
+     * @param baseUrl The page URL, ending in {@code ?} or {@code &}.
+     * @return The page to render.
+     */
+    public <T> Page<T> finish(List<T> rows, Function<T, Object> key, Function<T, Integer> id, String baseUrl) {
+        boolean more = rows.size() > size;
+        List<T> items = more ? new ArrayList<>(rows.subList(0, size)) : rows;
+        if (backward) {
+            Collections.reverse(items);
+        }
+
+        String next = null, prev = null;
+        if (!items.isEmpty()) {
+            T first = items.get(0);
+            T last = items.get(items.size() - 1);
+            if (backward || more) {
+                next = baseUrl + "size=" + size + "&after=" + encode(key.apply(last) + "_" + id.apply(last));
+            }
+            if (backward ? more : cursorKey != null) {
+                prev = baseUrl + "size=" + size + "&before=" + encode(key.apply(first) + "_" + id.apply(first));
+            }
+        }
+        return new Page<>(items, next, prev);
+    }
+
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError("UTF-8 not supported", e);
+        }
+    }
+
+    /**
+     * One page of results with links to its neighbours.
+     */
+    public static class Page<T> {
+        private final List<T> items;
+        private final String next;
+        private final String prev;
+
+        Page(List<T> items, String next, String prev) {
+            this.items = items;
+            this.next = next;
+            this.prev = prev;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        /**
+         * Get a page with the same links over different items, such as these items
+         * with more loaded.
+         */
+        public <U> Page<U> withItems(List<U> newItems) {
+            return new Page<>(newItems, next, prev);
+        }
+
+        /**
+         * The URL of the next (older) page, or {@code null} on the last page.
+         */
+        public String getNext() {
+            return next;
+        }
+
+        /**
+         * The URL of the previous (newer) page, or {@code null} on the first page.
+         */
+        public String getPrev() {
+            return prev;
+        }
+    }
+}
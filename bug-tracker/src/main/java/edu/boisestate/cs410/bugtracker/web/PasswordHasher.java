@@ -0,0 +1,86 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt hashing on a small dedicated thread pool, so a burst of logins cannot
+ * tie up every request thread with CPU-bound work.
+ *
+ * The pool has a bounded queue; when it is full, {@link #hash} and {@link #check} throw
+ * {@link RejectedExecutionException} immediately so the caller can shed the request.
+ */
+public class PasswordHasher {
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a password hasher.
+     * @param cost The BCrypt cost (log2 of the number of rounds) for new hashes.
+     * @param threads The number of hashing threads.
+     * @param queueSize The number of requests that may wait for a hashing thread.
+     */
+    public PasswordHasher(int cost, int threads, int queueSize) {
+        this.cost = cost;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(queueSize),
+                                          r -> {
+                                              Thread t = new Thread(r, "bcrypt-" + threadCount.incrementAndGet());
+                                              t.setDaemon(true);
+                                              return t;
+                                          },
+                                          (r, pool) -> {
+                                              rejected.increment();
+                                              throw new RejectedExecutionException("password hashing queue is full");
+                                          });
+    }
+
+    /**
+     * Hash a password at the configured cost.
+     * @throws RejectedExecutionException if the hashing queue is full.
+     */
+    public CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)), executor);
+    }
+
+    /**
+     * Check a password against a stored hash.
+     * @throws RejectedExecutionException if the hashing queue is full.
+     */
+    public CompletableFuture<Boolean> check(String password, String hash) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.checkpw(password, hash), executor);
+    }
+
+    /**
+     * Query whether a stored hash was made at a different cost than the current one.
+     */
+    public boolean needsRehash(String hash) {
+        // BCrypt hashes look like $2a$10$..., with the cost in the third field
+        String[] parts = hash.split("\\$");
+        if (parts.length < 4) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[2]) != cost;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,75 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live statistics for a database connection pool.
+ */
+public class PoolStats {
+    private static final Logger logger = LoggerFactory.getLogger(PoolStats.class);
+
+    private final String name;
+    private final GenericObjectPool<?> pool;
+
+    public PoolStats(String name, GenericObjectPool<?> pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GenericObjectPool<?> getPool() {
+        return pool;
+    }
+
+    /**
+     * Render the statistics as plain text, one {@code key value} pair per line.
+     */
+    public String report() {
+        return String.format("pool %s\n" +
+                                     "active %d\n" +
+                                     "idle %d\n" +
+                                     "waiters %d\n" +
+                                     "max_total %d\n" +
+                                     "borrowed %d\n" +
+                                     "created %d\n" +
+                                     "destroyed %d\n" +
+                                     "mean_borrow_wait_ms %d\n" +
+                                     "max_borrow_wait_ms %d\n",
+                             name, pool.getNumActive(), pool.getNumIdle(), pool.getNumWaiters(),
+                             pool.getMaxTotal(), pool.getBorrowedCount(), pool.getCreatedCount(),
+                             pool.getDestroyedCount(), pool.getMeanBorrowWaitTimeMillis(),
+                             pool.getMaxBorrowWaitTimeMillis());
+    }
+
+    /**
+     * Log the pool statistics periodically, at warning level while borrowers are waiting.
+     * @param seconds The logging interval.
+     */
+    public void logEvery(int seconds) {
+        ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pool-stats-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        exec.scheduleAtFixedRate(() -> {
+            int waiters = pool.getNumWaiters();
+            String line = String.format("pool %s: %d active, %d idle, %d waiting, mean wait %d ms, max wait %d ms",
+                                        name, pool.getNumActive(), pool.getNumIdle(), waiters,
+                                        pool.getMeanBorrowWaitTimeMillis(), pool.getMaxBorrowWaitTimeMillis());
+            if (waiters > 0) {
+                logger.warn(line);
+            } else {
+                logger.info(line);
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,228 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import com.google.common.cache.CacheBuilder;
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.error.PebbleException;
+import com.mitchellbosecke.pebble.loader.Loader;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.ModelAndView;
+import spark.TemplateEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Pebble template engine that compiles templates up front and keeps them in a sized cache.
+ *
+ * A template that is missing or fails to compile stops the server from starting instead
+ * of failing the first request, and so does a view name that has no template; see
+ * {@link #checkViews}.  In strict mode only templates compiled at startup may be rendered.
+ *
+ * Pebble keeps a cache of its own, which also holds the templates that pages include
+ * and extend; it is given the same size rather than Pebble's default of 200.
+ */
+public class PrecompiledTemplateEngine extends TemplateEngine {
+    private static final Logger logger = LoggerFactory.getLogger(PrecompiledTemplateEngine.class);
+
+    private final PebbleEngine pebble;
+    private final int maxSize;
+    private final boolean strict;
+    private final ConcurrentHashMap<String, PebbleTemplate> templates = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Map<String, Object> globals = new ConcurrentHashMap<>();
+
+    /**
+     * Create a template engine.
+     * @param loader The Pebble template loader.
+     * @param maxSize The maximum number of compiled templates to cache.
+     * @param strict Whether to refuse templates that were not precompiled.
+     */
+    public PrecompiledTemplateEngine(Loader loader, int maxSize, boolean strict) {
+        pebble = new PebbleEngine(loader);
+        pebble.setTemplateCache(CacheBuilder.newBuilder().maximumSize(maxSize).build());
+        this.maxSize = maxSize;
+        this.strict = strict;
+    }
+
+    /**
+     * Make a value available to every template.  Values in a page's own model take precedence.
+     */
+    public void setGlobal(String name, Object value) {
+        globals.put(name, value);
+    }
+
+    /**
+     * Compile templates ahead of the first request.
+     * @param names The template names to compile.
+     * @throws IllegalStateException if a template is missing or cannot be compiled, or in
+     *         strict mode, if there are more templates than the cache holds.
+     */
+    public void precompile(Collection<String> names) {
+        long start = System.nanoTime();
+        int compiled = 0;
+        for (String name : names) {
+            if (templates.size() >= maxSize) {
+                if (strict) {
+                    throw new IllegalStateException("template cache full at " + maxSize +
+                                                    " templates, cannot precompile " + name);
+                }
+                logger.warn("template cache full at {} templates, not precompiling {}", maxSize, name);
+                continue;
+            }
+            try {
+                templates.put(name, pebble.getTemplate(name));
+                compiled += 1;
+            } catch (PebbleException ex) {
+                throw new IllegalStateException("cannot compile template " + name, ex);
+            }
+        }
+        logger.info("precompiled {} templates in {} ms", compiled, (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Check that the views the routes render can be rendered, so a misspelt view name
+     * fails startup rather than its page.
+     * @param names The view names.
+     * @throws IllegalStateException if a view has no template, or in strict mode, if it
+     *         was not precompiled.
+     */
+    public void checkViews(Collection<String> names) {
+        for (String name : names) {
+            if (templates.containsKey(name)) {
+                continue;
+            }
+            if (strict) {
+                throw new IllegalStateException("view " + name + " was not precompiled");
+            }
+            try {
+                pebble.getTemplate(name);
+            } catch (PebbleException ex) {
+                throw new IllegalStateException("cannot compile view " + name, ex);
+            }
+        }
+    }
+
+    /**
+     * Find the HTML templates at the root of the classpath location holding {@code anchor}.
+     * @param anchor A template known to exist, e.g. {@code index.html}.
+     * @return The template names.
+     */
+    public static List<String> findTemplates(String anchor) {
+        URL url = PrecompiledTemplateEngine.class.getClassLoader().getResource(anchor);
+        if (url == null) {
+            throw new IllegalStateException("cannot find template " + anchor);
+        }
+        List<String> names = new ArrayList<>();
+        try {
+            if (url.getProtocol().equals("jar")) {
+                JarURLConnection jc = (JarURLConnection) url.openConnection();
+                jc.setUseCaches(false);
+                try (JarFile jar = jc.getJarFile()) {
+                    for (JarEntry entry : Collections.list(jar.entries())) {
+                        String name = entry.getName();
+                        if (!name.contains("/") && name.endsWith(".html")) {
+                            names.add(name);
+                        }
+                    }
+                }
+            } else {
+                File[] files = new File(url.toURI()).getParentFile().listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isFile() && file.getName().endsWith(".html")) {
+                            names.add(file.getName());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot list templates", e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("bad template location " + url, e);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String render(ModelAndView modelAndView) {
+        String name = modelAndView.getViewName();
+        PebbleTemplate template = getTemplate(name);
+        Object model = modelAndView.getModel();
+        if (model != null && !(model instanceof Map)) {
+            throw new IllegalArgumentException("model must be a Map");
+        }
+
+        Map<String, Object> context = new HashMap<>(globals);
+        if (model != null) {
+            context.putAll((Map<String, Object>) model);
+        }
+
+        StringWriter writer = new StringWriter();
+        try {
+            template.evaluate(writer, context);
+        } catch (PebbleException e) {
+            throw new IllegalStateException("error rendering template " + name, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private PebbleTemplate getTemplate(String name) {
+        PebbleTemplate template = templates.get(name);
+        if (template != null) {
+            hits.increment();
+            return template;
+        }
+
+        misses.increment();
+        if (strict) {
+            throw new IllegalStateException("template " + name + " was not precompiled");
+        }
+        try {
+            template = pebble.getTemplate(name);
+        } catch (PebbleException e) {
+            throw new IllegalStateException("cannot compile template " + name, e);
+        }
+        if (templates.size() < maxSize) {
+            templates.putIfAbsent(name, template);
+        }
+        return template;
+    }
+
+    public int getCachedCount() {
+        return templates.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The fraction of renders served from the compiled template cache.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
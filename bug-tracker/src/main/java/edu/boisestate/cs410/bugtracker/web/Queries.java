@@ -0,0 +1,495 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+/**
+ * Registry of the SQL statements used by the bug tracker.
+ *
+ * Keeping each statement in one constant means every request sends the same SQL
+ * text, so the pooled prepared statements (and the server-side plans behind them)
+ * are reused across requests.
+ */
+public final class Queries {
+    private Queries() {
+    }
+
+    /** A user by id, for the session user lookup. */
+    public static final String USER_BY_ID = "select\n" +
+            " aa.user_id\n" +
+            ",aa.user_name\n" +
+            ",aa.user_email\n" +
+            ",aa.display_name\n" +
+            ",aa.tag_id\n" +
+            ",aa.bug_id \n" +
+            "from users aa\n" +
+            "where aa.user_id = ?";
+
+    /** The id and password hash of a user, by user name. */
+    public static final String LOGIN_USER = "SELECT user_id, user_password FROM users WHERE user_name = ?";
+
+    /** Whether a user name is taken, ignoring case; returns a row if it is. */
+    public static final String USER_BY_NAME = "SELECT 1 FROM users WHERE lower(user_name) = lower(?)";
+
+    /** Add a user, returning its id. */
+    public static final String INSERT_USER = "INSERT INTO users (user_name, user_email, display_name, user_password) " +
+            "VALUES (?, ?, ?, ?) " +
+            "RETURNING user_id";
+
+    /** Update a user's profile and password. */
+    public static final String UPDATE_USER = "UPDATE users  \n" +
+            "    SET user_name = ?\n" +
+            "      , user_email = ?\n" +
+            "      , display_name = ?\n" +
+            "      , user_password = ?\n" +
+            "      WHERE user_id =  ?  ";
+
+    /** Update a user's profile, keeping the current password. */
+    public static final String UPDATE_USER_PROFILE = "UPDATE users\n" +
+            "   SET user_name = ?\n" +
+            "     , user_email = ?\n" +
+            "     , display_name = ?\n" +
+            " WHERE user_id = ?";
+
+    /** Replace a password hash, if it has not been changed since it was read. */
+    public static final String REHASH_USER_PASSWORD = "UPDATE users SET user_password = ? WHERE user_id = ? AND user_password = ?";
+
+    /** Bugs created by a user, newest first. */
+    public static final String USER_BUGS = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id\n" +
+            "FROM bugs aa\n" +
+            "WHERE aa.user_id = ?" +
+            " ORDER BY aa.create_date DESC;";
+
+    /** The newest bugs in a user's subscription feed, up to a limit. */
+    public static final String FEED_BUGS = "SELECT bb.bug_id,\n" +
+            "       bb.bug_title,\n" +
+            "       bb.bug_body,\n" +
+            "       bb.bug_status,\n" +
+            "       bb.create_date,\n" +
+            "       bb.close_date,\n" +
+            "       bb.user_id,\n" +
+            "       bb.milestone_id\n" +
+            "  FROM user_feed aa\n" +
+            "  JOIN bugs bb\n" +
+            "    ON bb.bug_id = aa.bug_id\n" +
+            " WHERE aa.user_id = ?\n" +
+            " ORDER BY aa.create_date DESC, aa.bug_id DESC\n" +
+            " LIMIT ?";
+
+    /**
+     * Lock tags against new subscriptions while a bug is tagged and fanned out.  Pairs with
+     * {@link #LOCK_TAG_FOR_SUBSCRIBE}, so a fan-out and a backfill of the same tag never
+     * both miss the bug.
+     */
+    public static final String LOCK_TAGS_FOR_FAN_OUT = "SELECT tag_id FROM tags WHERE tag_id = ANY(?)\n" +
+            " ORDER BY tag_id\n" +
+            "   FOR SHARE";
+
+    /**
+     * Lock a tag against concurrent fan-outs while a user subscribes to it and is backfilled.
+     * NO KEY UPDATE still lets other transactions link bugs to the tag (their foreign key
+     * checks take KEY SHARE locks) but waits for, and holds off, {@link #LOCK_TAGS_FOR_FAN_OUT}.
+     */
+    public static final String LOCK_TAG_FOR_SUBSCRIBE = "SELECT tag_id FROM tags WHERE tag_id = ?\n" +
+            "   FOR NO KEY UPDATE";
+
+    /** Add a newly tagged bug to the feed of every user subscribed to one of its tags. */
+    public static final String FAN_OUT_BUG = "INSERT INTO user_feed (user_id, bug_id, create_date)\n" +
+            "SELECT DISTINCT cc.user_id, aa.bug_id, aa.create_date\n" +
+            "  FROM bugs aa\n" +
+            "  JOIN tag_bug_xref bb\n" +
+            "    ON bb.bug_id = aa.bug_id\n" +
+            "  JOIN user_tag_subscription cc\n" +
+            "    ON cc.tag_id = bb.tag_id\n" +
+            " WHERE aa.bug_id = ?\n" +
+            "ON CONFLICT DO NOTHING";
+
+    /** Add a tag's existing bugs to a user's feed, after the user subscribes to it. */
+    public static final String BACKFILL_FEED = "INSERT INTO user_feed (user_id, bug_id, create_date)\n" +
+            "SELECT ?, aa.bug_id, aa.create_date\n" +
+            "  FROM bugs aa\n" +
+            "  JOIN tag_bug_xref bb\n" +
+            "    ON bb.bug_id = aa.bug_id\n" +
+            " WHERE bb.tag_id = ?\n" +
+            "ON CONFLICT DO NOTHING";
+
+    /** A single bug by id. */
+    public static final String BUG_BY_ID = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id\n" +
+            "FROM bugs aa\n" +
+            "WHERE aa.bug_id = ?";
+
+    /** A bug's row version, for conditional GETs. */
+    public static final String BUG_VERSION = "SELECT row_version, modified_at FROM bugs WHERE bug_id = ?";
+
+    /** Add a bug, returning its id. */
+    public static final String INSERT_BUG = "INSERT INTO bugs ( " +
+            "bug_title , " +
+            "bug_body , " +
+            "bug_status , " +
+            "create_date , " +
+            "close_date , " +
+            "user_id , " +
+            "milestone_id) " +
+            "VALUES (?,?,?,?,?,?,?)" +
+            "RETURNING bug_id";
+
+    /** Every tag, for the tag dictionary. */
+    public static final String ALL_TAGS = "SELECT tag_id, tag FROM tags";
+
+    /**
+     * Add any missing tags from a {@code varchar} array, returning the ids of the tags
+     * this statement created and of those that already existed.
+     */
+    public static final String UPSERT_TAGS = "WITH input AS (\n" +
+            "    SELECT DISTINCT unnest(?::varchar[]) AS tag\n" +
+            "), created AS (\n" +
+            "    INSERT INTO tags (tag)\n" +
+            "    SELECT tag FROM input\n" +
+            "    ON CONFLICT (tag) DO NOTHING\n" +
+            "    RETURNING tag_id, tag\n" +
+            ")\n" +
+            "SELECT tag_id, tag FROM created\n" +
+            "UNION ALL\n" +
+            "SELECT cc.tag_id, cc.tag\n" +
+            "  FROM tags cc\n" +
+            "  JOIN input ii ON ii.tag = cc.tag";
+
+    /** The ids of a batch of tags, given as a {@code varchar} array. */
+    public static final String TAG_IDS_BY_NAME = "SELECT tag_id, tag FROM tags WHERE tag = ANY(?)";
+
+    /** Attach a tag to a bug. */
+    public static final String INSERT_TAG_BUG_XREF = "insert into tag_bug_xref (tag_id, bug_id) \n" +
+            "values ( ?, ? ) ";
+
+    /** Subscribe a user to a tag. */
+    public static final String INSERT_TAG_SUBSCRIPTION = "INSERT INTO user_tag_subscription (user_id, tag_id)\n" +
+            "VALUES (? , ?)\n" +
+            "ON CONFLICT DO NOTHING";
+
+    /** The names of the tags a user is subscribed to. */
+    public static final String USER_SUBSCRIBED_TAGS = "SELECT bb.tag\n" +
+            "  FROM user_tag_subscription aa\n" +
+            "  JOIN tags bb ON bb.tag_id = aa.tag_id\n" +
+            " WHERE aa.user_id = ?";
+
+    /** A single milestone by id, with its bug counts; the same columns as {@link #MILESTONE_LIST}. */
+    public static final String MILESTONE_BY_ID = "SELECT aa.milestone_id,\n" +
+            "       aa.milestone_name,\n" +
+            "       aa.milestone_description,\n" +
+            "       coalesce(bb.open_count, 0) AS open_count,\n" +
+            "       coalesce(bb.closed_count, 0) AS closed_count\n" +
+            "  FROM milestones aa\n" +
+            "  LEFT JOIN milestone_counts bb\n" +
+            "    ON bb.milestone_id = aa.milestone_id\n" +
+            " WHERE aa.milestone_id = ?";
+
+    /** A milestone's row version, for conditional GETs. */
+    public static final String MILESTONE_VERSION = "SELECT row_version, modified_at FROM milestones WHERE milestone_id = ?";
+
+    /** Add a milestone, returning its id. */
+    public static final String INSERT_MILESTONE = "INSERT INTO milestones " +
+            "(milestone_name, milestone_description) \n" +
+            "    VALUES ( ?, ? ) " +
+            "RETURNING milestone_id;";
+
+    /** Every milestone with its bug counts, maintained by triggers on {@code bugs}. */
+    public static final String MILESTONE_LIST = "SELECT aa.milestone_id,\n" +
+            "       aa.milestone_name,\n" +
+            "       aa.milestone_description,\n" +
+            "       coalesce(bb.open_count, 0) AS open_count,\n" +
+            "       coalesce(bb.closed_count, 0) AS closed_count\n" +
+            "  FROM milestones aa\n" +
+            "  LEFT JOIN milestone_counts bb\n" +
+            "    ON bb.milestone_id = aa.milestone_id\n" +
+            " ORDER BY aa.milestone_id";
+
+    /** The tag ids of a batch of bugs, given as an {@code int4} array. */
+    public static final String TAGS_FOR_BUGS = "SELECT bug_id, tag_id\n" +
+            "  FROM tag_bug_xref\n" +
+            " WHERE bug_id = ANY(?)";
+
+    /** The names of a batch of tags, given as an {@code int4} array. */
+    public static final String TAG_NAMES_BY_ID = "SELECT tag_id, tag FROM tags WHERE tag_id = ANY(?)";
+
+    /** Rebuild a bug's full-text search vector from its title, tags and body. */
+    public static final String REINDEX_BUG_SEARCH = "UPDATE bugs\n" +
+            "   SET search_vector =\n" +
+            "       setweight(to_tsvector('english', bug_title), 'A') ||\n" +
+            "       setweight(to_tsvector('english', coalesce((SELECT string_agg(cc.tag, ' ')\n" +
+            "                                                    FROM tag_bug_xref bb\n" +
+            "                                                    JOIN tags cc ON cc.tag_id = bb.tag_id\n" +
+            "                                                   WHERE bb.bug_id = bugs.bug_id), '')), 'B') ||\n" +
+            "       setweight(to_tsvector('english', bug_body), 'C')\n" +
+            " WHERE bug_id = ?";
+
+    // Paged queries: the keyset condition and ORDER BY are filled in by PageRequest.format.
+
+    /** A page of all bugs, newest first. */
+    public static final String BUG_LIST_PAGE = "SELECT bug_title, bug_id, bug_status, create_date \n" +
+            "FROM bugs\n" +
+            "WHERE %s\n" +
+            "ORDER BY %s\n" +
+            "LIMIT ?";
+
+    /** A page of the bugs in a milestone, newest first. */
+    public static final String MILESTONE_BUGS_PAGE = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id\n" +
+            "FROM bugs aa\n" +
+            "WHERE aa.milestone_id = ?\n" +
+            "  AND %s\n" +
+            "ORDER BY %s\n" +
+            "LIMIT ?";
+
+    /** A page of full-text search matches, best first. */
+    public static final String SEARCH_BUGS_PAGE = "SELECT bug_title, bug_id, bug_status, create_date, rank\n" +
+            "  FROM (SELECT bug_title, bug_id, bug_status, create_date,\n" +
+            "               ts_rank(search_vector, query) AS rank\n" +
+            "          FROM bugs, plainto_tsquery('english', ?) query\n" +
+            "         WHERE search_vector @@ query) matches\n" +
+            " WHERE %s\n" +
+            " ORDER BY %s\n" +
+            " LIMIT ?";
+
+    // JSON API queries.  Each returns the eight bug columns in a fixed order, then the
+    // bug's tag ids, so rows can be streamed out by column index.
+
+    /** A page of all bugs with their tag ids, newest first. */
+    public static final String API_BUG_PAGE = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id,\n" +
+            "       ARRAY(SELECT bb.tag_id FROM tag_bug_xref bb WHERE bb.bug_id = aa.bug_id) AS tag_ids\n" +
+            "  FROM bugs aa\n" +
+            " WHERE %s\n" +
+            " ORDER BY %s\n" +
+            " LIMIT ?";
+
+    /** A page of the bugs in a milestone with their tag ids, newest first. */
+    public static final String API_MILESTONE_BUG_PAGE = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id,\n" +
+            "       ARRAY(SELECT bb.tag_id FROM tag_bug_xref bb WHERE bb.bug_id = aa.bug_id) AS tag_ids\n" +
+            "  FROM bugs aa\n" +
+            " WHERE aa.milestone_id = ?\n" +
+            "   AND %s\n" +
+            " ORDER BY %s\n" +
+            " LIMIT ?";
+
+    /** A single bug with its tag ids. */
+    public static final String API_BUG_BY_ID = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id,\n" +
+            "       ARRAY(SELECT bb.tag_id FROM tag_bug_xref bb WHERE bb.bug_id = aa.bug_id) AS tag_ids\n" +
+            "  FROM bugs aa\n" +
+            " WHERE aa.bug_id = ?";
+
+    /** A page of full-text search matches with their tag ids and rank, best first. */
+    public static final String API_SEARCH_PAGE = "SELECT bug_id, bug_title, bug_body, bug_status, create_date,\n" +
+            "       close_date, user_id, milestone_id,\n" +
+            "       ARRAY(SELECT bb.tag_id FROM tag_bug_xref bb WHERE bb.bug_id = matches.bug_id) AS tag_ids,\n" +
+            "       rank\n" +
+            "  FROM (SELECT aa.bug_id, aa.bug_title, aa.bug_body, aa.bug_status, aa.create_date,\n" +
+            "               aa.close_date, aa.user_id, aa.milestone_id,\n" +
+            "               ts_rank(aa.search_vector, query) AS rank\n" +
+            "          FROM bugs aa, plainto_tsquery('english', ?) query\n" +
+            "         WHERE aa.search_vector @@ query) matches\n" +
+            " WHERE %s\n" +
+            " ORDER BY %s\n" +
+            " LIMIT ?";
+
+    /** A page of tags, newest first. */
+    public static final String API_TAG_PAGE = "SELECT tag_id, tag\n" +
+            "  FROM tags\n" +
+            " WHERE %s\n" +
+            " ORDER BY %s\n" +
+            " LIMIT ?";
+
+    /**
+     * A chunk of bugs after an id, in id order, with their milestone names, tag names and
+     * comments as a JSON array.  BugExporter reads an export as a run of these chunks.
+     */
+    public static final String EXPORT_BUGS = "SELECT aa.bug_id,\n" +
+            "       aa.bug_title,\n" +
+            "       aa.bug_body,\n" +
+            "       aa.bug_status,\n" +
+            "       aa.create_date,\n" +
+            "       aa.close_date,\n" +
+            "       aa.user_id,\n" +
+            "       aa.milestone_id,\n" +
+            "       (SELECT mm.milestone_name FROM milestones mm WHERE mm.milestone_id = aa.milestone_id) AS milestone_name,\n" +
+            "       ARRAY(SELECT cc.tag\n" +
+            "               FROM tag_bug_xref bb\n" +
+            "               JOIN tags cc ON cc.tag_id = bb.tag_id\n" +
+            "              WHERE bb.bug_id = aa.bug_id\n" +
+            "              ORDER BY cc.tag) AS tags,\n" +
+            "       (SELECT json_agg(json_build_object('id', dd.comment_id,\n" +
+            "                                          'body', dd.comment_body,\n" +
+            "                                          'date', dd.comment_date,\n" +
+            "                                          'user_id', dd.user_id)\n" +
+            "                        ORDER BY dd.comment_date, dd.comment_id)\n" +
+            "          FROM comments dd\n" +
+            "         WHERE dd.bug_id = aa.bug_id) AS comments\n" +
+            "  FROM bugs aa\n" +
+            " WHERE aa.bug_id > ?\n" +
+            " ORDER BY aa.bug_id\n" +
+            " LIMIT ?";
+
+    // Bulk import: BugImporter copies each batch into the import_bugs staging table,
+    // then resolves and inserts it with these set-wise statements in one transaction.
+
+    /** The staging table for a bulk import; each commit empties it. */
+    public static final String CREATE_IMPORT_STAGING = "CREATE TEMP TABLE IF NOT EXISTS import_bugs (\n" +
+            "    line_no BIGINT NOT NULL,\n" +
+            "    bug_id INTEGER NULL,\n" +
+            "    bug_title VARCHAR(100) NOT NULL,\n" +
+            "    bug_body VARCHAR(2000) NOT NULL,\n" +
+            "    bug_status VARCHAR(100) NOT NULL,\n" +
+            "    create_date DATE NOT NULL,\n" +
+            "    close_date DATE NULL,\n" +
+            "    user_id INTEGER NULL,\n" +
+            "    user_name VARCHAR(100) NULL,\n" +
+            "    milestone_id INTEGER NULL,\n" +
+            "    milestone_name VARCHAR(100) NULL,\n" +
+            "    tags TEXT NULL\n" +
+            ") ON COMMIT DELETE ROWS";
+
+    /** Stream a batch into the staging table, in COPY text format. */
+    public static final String COPY_IMPORT_STAGING = "COPY import_bugs (line_no, bug_title, bug_body, bug_status, " +
+            "create_date, close_date, user_id, user_name, milestone_id, milestone_name, tags) FROM STDIN";
+
+    /** Refresh the staging table's statistics, so the joins below are planned for its real size. */
+    public static final String ANALYZE_IMPORT_STAGING = "ANALYZE import_bugs";
+
+    /**
+     * Turn off the per-row milestone triggers on bugs for the rest of the transaction;
+     * see V7__bulk_import_triggers.sql.  The batch then runs {@link #IMPORT_COUNT_MILESTONES}
+     * and {@link #IMPORT_TOUCH_MILESTONES} itself.
+     */
+    public static final String IMPORT_BULK_MODE = "SET LOCAL bugtracker.bulk_import = on";
+
+    /** Resolve staged user names to ids. */
+    public static final String IMPORT_RESOLVE_USERS = "UPDATE import_bugs ss\n" +
+            "   SET user_id = uu.user_id\n" +
+            "  FROM users uu\n" +
+            " WHERE ss.user_id IS NULL\n" +
+            "   AND uu.user_name = ss.user_name";
+
+    /** Drop staged bugs whose user does not exist, returning their lines and users. */
+    public static final String IMPORT_REJECT_USERS = "DELETE FROM import_bugs ss\n" +
+            " WHERE ss.user_id IS NULL\n" +
+            "    OR NOT EXISTS (SELECT 1 FROM users uu WHERE uu.user_id = ss.user_id)\n" +
+            "RETURNING ss.line_no, coalesce(ss.user_name, ss.user_id::text)";
+
+    /** Resolve staged milestone names to ids; a duplicated name resolves to its oldest milestone. */
+    public static final String IMPORT_RESOLVE_MILESTONES = "UPDATE import_bugs ss\n" +
+            "   SET milestone_id = mm.milestone_id\n" +
+            "  FROM (SELECT milestone_name, min(milestone_id) AS milestone_id\n" +
+            "          FROM milestones\n" +
+            "         GROUP BY milestone_name) mm\n" +
+            " WHERE ss.milestone_id IS NULL\n" +
+            "   AND mm.milestone_name = ss.milestone_name";
+
+    /** Drop staged bugs whose milestone does not exist, returning their lines and milestones. */
+    public static final String IMPORT_REJECT_MILESTONES = "DELETE FROM import_bugs ss\n" +
+            " WHERE (ss.milestone_id IS NULL AND ss.milestone_name IS NOT NULL)\n" +
+            "    OR (ss.milestone_id IS NOT NULL\n" +
+            "        AND NOT EXISTS (SELECT 1 FROM milestones mm WHERE mm.milestone_id = ss.milestone_id))\n" +
+            "RETURNING ss.line_no, coalesce(ss.milestone_name, ss.milestone_id::text)";
+
+    /** Give each staged bug its id up front, so its tags can be linked without a round trip. */
+    public static final String IMPORT_ASSIGN_IDS = "UPDATE import_bugs\n" +
+            "   SET bug_id = nextval(pg_get_serial_sequence('bugs', 'bug_id'))";
+
+    /** Add every staged tag that does not exist yet. */
+    public static final String IMPORT_INSERT_TAGS = "INSERT INTO tags (tag)\n" +
+            "SELECT DISTINCT tt.tag\n" +
+            "  FROM import_bugs ss\n" +
+            " CROSS JOIN LATERAL regexp_split_to_table(ss.tags, ' ') AS tt(tag)\n" +
+            " WHERE tt.tag <> ''\n" +
+            "ON CONFLICT (tag) DO NOTHING";
+
+    /**
+     * Insert the staged bugs with their search vectors, built as {@link #REINDEX_BUG_SEARCH}
+     * does but from the staged tag names, so no bug is written twice.
+     */
+    public static final String IMPORT_INSERT_BUGS = "INSERT INTO bugs (bug_id, bug_title, bug_body, bug_status,\n" +
+            "                  create_date, close_date, user_id, milestone_id, search_vector)\n" +
+            "SELECT bug_id, bug_title, bug_body, bug_status, create_date, close_date, user_id, milestone_id,\n" +
+            "       setweight(to_tsvector('english', bug_title), 'A') ||\n" +
+            "       setweight(to_tsvector('english', coalesce(tags, '')), 'B') ||\n" +
+            "       setweight(to_tsvector('english', bug_body), 'C')\n" +
+            "  FROM import_bugs\n" +
+            " ORDER BY line_no";
+
+    /** Add the staged bugs to their milestones' counts, as the bugs_milestone_counts trigger would. */
+    public static final String IMPORT_COUNT_MILESTONES = "UPDATE milestone_counts cc\n" +
+            "   SET open_count = cc.open_count + ss.open_count,\n" +
+            "       closed_count = cc.closed_count + ss.closed_count\n" +
+            "  FROM (SELECT milestone_id,\n" +
+            "               count(*) FILTER (WHERE close_date IS NULL) AS open_count,\n" +
+            "               count(*) FILTER (WHERE close_date IS NOT NULL) AS closed_count\n" +
+            "          FROM import_bugs\n" +
+            "         WHERE milestone_id IS NOT NULL\n" +
+            "         GROUP BY milestone_id) ss\n" +
+            " WHERE cc.milestone_id = ss.milestone_id";
+
+    /** Bump the row versions of the staged bugs' milestones once each, as bugs_touch_milestones would. */
+    public static final String IMPORT_TOUCH_MILESTONES = "UPDATE milestones\n" +
+            "   SET modified_at = now()\n" +
+            " WHERE milestone_id IN (SELECT milestone_id FROM import_bugs)";
+
+    /** Link the staged bugs to their tags. */
+    public static final String IMPORT_TAG_BUGS = "INSERT INTO tag_bug_xref (tag_id, bug_id)\n" +
+            "SELECT DISTINCT cc.tag_id, ss.bug_id\n" +
+            "  FROM import_bugs ss\n" +
+            " CROSS JOIN LATERAL regexp_split_to_table(ss.tags, ' ') AS tt(tag)\n" +
+            "  JOIN tags cc ON cc.tag = tt.tag";
+
+    /** Lock the staged bugs' tags against new subscriptions; see {@link #LOCK_TAGS_FOR_FAN_OUT}. */
+    public static final String IMPORT_LOCK_TAGS = "SELECT cc.tag_id\n" +
+            "  FROM tags cc\n" +
+            " WHERE cc.tag IN (SELECT tt.tag\n" +
+            "                    FROM import_bugs ss\n" +
+            "                   CROSS JOIN LATERAL regexp_split_to_table(ss.tags, ' ') AS tt(tag))\n" +
+            " ORDER BY cc.tag_id\n" +
+            "   FOR SHARE OF cc";
+
+    /** Add the staged bugs to the feeds of users subscribed to their tags; see {@link #FAN_OUT_BUG}. */
+    public static final String IMPORT_FAN_OUT = "INSERT INTO user_feed (user_id, bug_id, create_date)\n" +
+            "SELECT DISTINCT cc.user_id, ss.bug_id, ss.create_date\n" +
+            "  FROM import_bugs ss\n" +
+            "  JOIN tag_bug_xref bb ON bb.bug_id = ss.bug_id\n" +
+            "  JOIN user_tag_subscription cc ON cc.tag_id = bb.tag_id\n" +
+            "ON CONFLICT DO NOTHING";
+}
@@ -0,0 +1,220 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Session;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes read-only work to read replicas and everything else to the primary.
+ *
+ * Replicas are picked round-robin among those that passed their last health check.
+ * A session that wrote recently reads from the primary for a while, so users see
+ * their own changes even while the replicas catch up.  With no healthy replica,
+ * reads go to the primary.
+ *
+ * A replica is marked down when a connection to it cannot be made or fails validation,
+ * but not when its pool is merely busy.  Health checks connect directly rather than
+ * through the pool, so a busy pool does not fail them and they do not hold up requests.
+ */
+public class ReplicaRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRouter.class);
+    private static final String LAST_WRITE = "lastWriteMillis";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final long stickyMillis;
+    private final LongAdder primaryReads = new LongAdder();
+
+    /**
+     * Create a router.
+     * @param primary The primary database.
+     * @param stickyMillis How long after a write a session keeps reading from the primary.
+     */
+    public ReplicaRouter(DataSource primary, long stickyMillis) {
+        this.primary = primary;
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * Add a read replica.  Replicas start out healthy.
+     * @param name The replica's name, for logs and reports.
+     * @param source The replica's connection pool.
+     * @param direct Makes connections to the replica outside the pool, for health checks.
+     */
+    public void addReplica(String name, DataSource source, ConnectionFactory direct) {
+        replicas.add(new Replica(name, source, direct));
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Get a connection to the primary, for writes.
+     */
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    /**
+     * Get a connection for read-only work on behalf of a request.
+     * @param request The request; if its session wrote recently, the primary is used.
+     */
+    public Connection getReadConnection(Request request) throws SQLException {
+        if (replicas.isEmpty() || wroteRecently(request)) {
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((start + i) % n);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection cxn = replica.source.getConnection();
+                replica.reads.increment();
+                return cxn;
+            } catch (SQLException ex) {
+                if (isPoolTimeout(ex)) {
+                    // the replica is fine, just busy; try the next one
+                    logger.debug("replica {} pool is exhausted", replica.name);
+                    replica.busy.increment();
+                } else {
+                    logger.warn("replica {} failed, marking it down until the next health check", replica.name, ex);
+                    replica.healthy = false;
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    // DBCP reports a borrow that timed out, or found the pool exhausted, as an SQLException
+    // caused by one of these; a connection that could not be made or validated fails otherwise.
+    private static boolean isPoolTimeout(SQLException ex) {
+        Throwable cause = ex.getCause();
+        if (!(cause instanceof NoSuchElementException) || cause.getMessage() == null) {
+            return false;
+        }
+        return cause.getMessage().startsWith("Timeout waiting for idle object")
+                || cause.getMessage().startsWith("Pool exhausted");
+    }
+
+    /**
+     * Record that a request's session has written to the primary.
+     */
+    public void markWrite(Request request) {
+        Session session = request.session(false);
+        if (session != null) {
+            session.attribute(LAST_WRITE, System.currentTimeMillis());
+        }
+    }
+
+    private boolean wroteRecently(Request request) {
+        Session session = request.session(false);
+        if (session == null) {
+            return false;
+        }
+        Long last = session.attribute(LAST_WRITE);
+        return last != null && System.currentTimeMillis() - last < stickyMillis;
+    }
+
+    /**
+     * Check replica health periodically in the background.
+     * @param seconds The interval between checks.
+     */
+    public void checkEvery(int seconds) {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        exec.scheduleWithFixedDelay(this::checkReplicas, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Check every replica now.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection cxn = replica.direct.createConnection();
+                 Statement stmt = cxn.createStatement()) {
+                stmt.setQueryTimeout(5);
+                stmt.execute("SELECT 1");
+                healthy = true;
+            } catch (SQLException ex) {
+                logger.debug("health check of replica {} failed", replica.name, ex);
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                logger.warn("replica {} is now {}", replica.name, healthy ? "up" : "down");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public int getHealthyCount() {
+        int count = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Render per-database read counts and replica health as plain text.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("primary reads ").append(primaryReads.sum()).append('\n');
+        for (Replica replica : replicas) {
+            sb.append(replica.name).append(" reads ").append(replica.reads.sum())
+              .append(" busy ").append(replica.busy.sum())
+              .append(replica.healthy ? " up" : " down").append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static class Replica {
+        final String name;
+        final DataSource source;
+        final ConnectionFactory direct;
+        final LongAdder reads = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        volatile boolean healthy = true;
+
+        Replica(String name, DataSource source, ConnectionFactory direct) {
+            this.name = name;
+            this.source = source;
+            this.direct = direct;
+        }
+    }
+}
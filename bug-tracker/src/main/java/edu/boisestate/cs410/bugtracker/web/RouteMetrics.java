@@ -0,0 +1,165 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import spark.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Per-route request timing, exported in the Prometheus text format.
+ *
+ * Each route gets its statistics when it is registered, so the request path only
+ * reads the clock and bumps counters.
+ */
+public class RouteMetrics {
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Map<String, RouteStats> routes = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+    /**
+     * Wrap a route so that its requests are timed.
+     * @param method The HTTP method, for labelling.
+     * @param path The route path.
+     * @param route The route handler.
+     * @return The timed handler.
+     */
+    public Route timed(String method, String path, Route route) {
+        RouteStats stats = stats(method, path);
+        return (request, response) -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = route.handle(request, response);
+                failed = false;
+                return result;
+            } catch (HaltException ex) {
+                failed = ex.statusCode() >= 500;
+                throw ex;
+            } finally {
+                stats.record(System.nanoTime() - start, failed);
+            }
+        };
+    }
+
+    /**
+     * Wrap a template route so that both the handler and the template rendering are timed.
+     * @param method The HTTP method, for labelling.
+     * @param path The route path.
+     * @param route The route handler.
+     * @param engine The template engine to render with.
+     * @return The timed handler, which returns the rendered page.
+     */
+    public Route timed(String method, String path, TemplateViewRoute route, TemplateEngine engine) {
+        return timed(method, path, (request, response) -> {
+            ModelAndView mav = route.handle(request, response);
+            // handlers return null after redirecting
+            return mav == null ? "" : engine.render(mav);
+        });
+    }
+
+    /**
+     * Add a gauge to the exported metrics.
+     * @param name The metric name.
+     * @param help The metric description.
+     * @param value Supplies the current value.
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, help, null, null, value);
+    }
+
+    /**
+     * Add one labelled series of a gauge, e.g. one per connection pool.  The series
+     * of a gauge share its name and help text.
+     * @param name The metric name.
+     * @param help The metric description.
+     * @param label The label name, or {@code null} for an unlabelled gauge.
+     * @param labelValue The label value.
+     * @param value Supplies the current value.
+     */
+    public synchronized void gauge(String name, String help, String label, String labelValue,
+                                   DoubleSupplier value) {
+        String labels = label == null ? "" : "{" + label + "=\"" + labelValue + "\"}";
+        gauges.computeIfAbsent(name, k -> new Gauge(help)).series.put(labels, value);
+    }
+
+    private synchronized RouteStats stats(String method, String path) {
+        return routes.computeIfAbsent(method + " " + path, k -> new RouteStats(method, path));
+    }
+
+    /**
+     * Render all metrics in the Prometheus text exposition format.
+     */
+    public synchronized String render() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP http_request_duration_seconds Request latency by route.\n");
+        sb.append("# TYPE http_request_duration_seconds summary\n");
+        for (RouteStats stats : routes.values()) {
+            for (double q : QUANTILES) {
+                sb.append("http_request_duration_seconds{").append(stats.labels)
+                  .append(",quantile=\"").append(q).append("\"} ")
+                  .append(seconds(stats.histogram.quantileMicros(q))).append('\n');
+            }
+            sb.append("http_request_duration_seconds_sum{").append(stats.labels).append("} ")
+              .append(seconds(stats.histogram.getSumMicros())).append('\n');
+            sb.append("http_request_duration_seconds_count{").append(stats.labels).append("} ")
+              .append(stats.histogram.getCount()).append('\n');
+        }
+
+        sb.append("# HELP http_request_duration_seconds_max Slowest request by route.\n");
+        sb.append("# TYPE http_request_duration_seconds_max gauge\n");
+        for (RouteStats stats : routes.values()) {
+            sb.append("http_request_duration_seconds_max{").append(stats.labels).append("} ")
+              .append(seconds(stats.histogram.getMaxMicros())).append('\n');
+        }
+
+        sb.append("# HELP http_request_errors_total Failed requests by route.\n");
+        sb.append("# TYPE http_request_errors_total counter\n");
+        for (RouteStats stats : routes.values()) {
+            sb.append("http_request_errors_total{").append(stats.labels).append("} ")
+              .append(stats.errors.sum()).append('\n');
+        }
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            sb.append("# HELP ").append(e.getKey()).append(' ').append(e.getValue().help).append('\n');
+            sb.append("# TYPE ").append(e.getKey()).append(" gauge\n");
+            for (Map.Entry<String, DoubleSupplier> series : e.getValue().series.entrySet()) {
+                sb.append(e.getKey()).append(series.getKey()).append(' ')
+                  .append(series.getValue().getAsDouble()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double seconds(long micros) {
+        return micros / 1e6;
+    }
+
+    private static class RouteStats {
+        final String labels;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        RouteStats(String method, String path) {
+            labels = "method=\"" + method + "\",route=\"" + path + "\"";
+        }
+
+        void record(long nanos, boolean failed) {
+            histogram.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
+    private static class Gauge {
+        final String help;
+        final Map<String, DoubleSupplier> series = new LinkedHashMap<>();
+
+        Gauge(String help) {
+            this.help = help;
+        }
+    }
+}
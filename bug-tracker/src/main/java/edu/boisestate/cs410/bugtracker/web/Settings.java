@@ -0,0 +1,77 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Server settings, read from the command line and an optional properties file.
+ *
+ * Options are given as {@code --key=value}; {@code --config=FILE} names a properties file.
+ * Command line options override system properties, which override the file.
+ * Remaining arguments are kept as positional arguments.
+ */
+public class Settings {
+    private final Properties properties = new Properties();
+    private final List<String> arguments = new ArrayList<>();
+
+    /**
+     * Parse the command line.
+     * @param args The program arguments.
+     * @return The settings.
+     * @throws IOException if the configuration file cannot be read.
+     */
+    public static Settings parse(String[] args) throws IOException {
+        Settings settings = new Settings();
+        Properties options = new Properties();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                String[] parts = arg.substring(2).split("=", 2);
+                options.setProperty(parts[0], parts.length > 1 ? parts[1] : "true");
+            } else {
+                settings.arguments.add(arg);
+            }
+        }
+
+        String config = options.getProperty("config", System.getProperty("config"));
+        if (config != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(config))) {
+                settings.properties.load(in);
+            }
+        }
+        settings.properties.putAll(System.getProperties());
+        settings.properties.putAll(options);
+        return settings;
+    }
+
+    /**
+     * Get the positional (non-option) arguments.
+     */
+    public List<String> getArguments() {
+        return Collections.unmodifiableList(arguments);
+    }
+
+    public String getString(String key, String dft) {
+        return properties.getProperty(key, dft);
+    }
+
+    public int getInt(String key, int dft) {
+        String value = properties.getProperty(key);
+        return value == null ? dft : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long dft) {
+        String value = properties.getProperty(key);
+        return value == null ? dft : Long.parseLong(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean dft) {
+        String value = properties.getProperty(key);
+        return value == null ? dft : Boolean.parseBoolean(value.trim());
+    }
+}
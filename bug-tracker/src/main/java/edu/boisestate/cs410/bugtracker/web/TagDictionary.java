@@ -0,0 +1,94 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-memory copy of the {@code tags} table, mapping tag names to ids and back.
+ *
+ * Tags are never renamed or deleted, so entries do not go stale.  The dictionary is
+ * loaded at startup and grows as tags are created; a tag created by another server
+ * process is picked up by {@link #loadIds} or {@link #loadNames} on first miss.
+ */
+public class TagDictionary {
+    private final ConcurrentMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    /**
+     * Load every tag.
+     * @param cxn The connection to query with.
+     */
+    public void loadAll(Connection cxn) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.ALL_TAGS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                put(rs.getInt(1), rs.getString(2));
+            }
+        }
+    }
+
+    /**
+     * Look up tags by name that are not in the dictionary yet.
+     * @param cxn The connection to query with.
+     * @param names The tag names to look up.
+     */
+    public void loadIds(Connection cxn, Collection<String> names) throws SQLException {
+        load(cxn, Queries.TAG_IDS_BY_NAME, cxn.createArrayOf("varchar", names.toArray()));
+    }
+
+    /**
+     * Look up tags by id that are not in the dictionary yet.
+     * @param cxn The connection to query with.
+     * @param ids The tag ids to look up.
+     */
+    public void loadNames(Connection cxn, Collection<Integer> ids) throws SQLException {
+        load(cxn, Queries.TAG_NAMES_BY_ID, cxn.createArrayOf("int4", ids.toArray()));
+    }
+
+    private void load(Connection cxn, String sql, Array keys) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(sql)) {
+            stmt.setArray(1, keys);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        } finally {
+            keys.free();
+        }
+    }
+
+    /**
+     * Record a tag.  Only call this once the tag's row is committed.
+     */
+    public void put(int id, String name) {
+        namesById.put(id, name);
+        idsByName.put(name, id);
+    }
+
+    /**
+     * Get a tag's id.
+     * @return The id, or {@code null} if the tag is not known.
+     */
+    public Integer getId(String name) {
+        return idsByName.get(name);
+    }
+
+    /**
+     * Get a tag's name.
+     * @return The name, or {@code null} if the tag is not known.
+     */
+    public String getName(int id) {
+        return namesById.get(id);
+    }
+
+    public int size() {
+        return namesById.size();
+    }
+}
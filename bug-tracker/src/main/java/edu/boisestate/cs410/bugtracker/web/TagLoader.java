@@ -0,0 +1,78 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Loads the tags for a batch of bugs in a single round trip.
+ */
+public class TagLoader {
+    private TagLoader() {
+    }
+
+    /**
+     * Get the tags for every bug in {@code bugIds}.  Tag names come from the dictionary;
+     * only the bug-to-tag links are queried.
+     * @param cxn The connection to query with.
+     * @param dictionary The tag dictionary.
+     * @param bugIds The bug ids to look up.
+     * @return A map from bug id to its tags, sorted by name; bugs without tags map to an empty list.
+     */
+    public static Map<Integer, List<String>> loadTags(Connection cxn, TagDictionary dictionary,
+                                                      Collection<Integer> bugIds) throws SQLException {
+        Map<Integer, List<String>> tags = new HashMap<>();
+        if (bugIds.isEmpty()) {
+            return tags;
+        }
+
+        Map<Integer, List<Integer>> tagIds = new HashMap<>();
+        for (Integer id : bugIds) {
+            tagIds.put(id, new ArrayList<>());
+        }
+        Set<Integer> unknown = new HashSet<>();
+        Array ids = cxn.createArrayOf("int4", bugIds.toArray());
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.TAGS_FOR_BUGS)) {
+            stmt.setArray(1, ids);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int tagId = rs.getInt(2);
+                    tagIds.get(rs.getInt(1)).add(tagId);
+                    if (dictionary.getName(tagId) == null) {
+                        unknown.add(tagId);
+                    }
+                }
+            }
+        } finally {
+            ids.free();
+        }
+        if (!unknown.isEmpty()) {
+            dictionary.loadNames(cxn, unknown);
+        }
+
+        for (Map.Entry<Integer, List<Integer>> e : tagIds.entrySet()) {
+            List<String> names = new ArrayList<>(e.getValue().size());
+            for (int tagId : e.getValue()) {
+                names.add(dictionary.getName(tagId));
+            }
+            Collections.sort(names);
+            tags.put(e.getKey(), names);
+        }
+        return tags;
+    }
+
+    /**
+     * Render a tag list the way the bug pages display it.
+     */
+    public static String joinTags(List<String> tags) {
+        StringBuilder sb = new StringBuilder();
+        for (String tag : tags) {
+            sb.append(tag);
+            sb.append(" ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Writes a bug's tags with a fixed number of round trips, however many tags it has.
+ */
+public class TagWriter {
+    private TagWriter() {
+    }
+
+    /**
+     * Look up the ids of tags, creating the ones that do not exist yet.
+     * @param cxn The connection to use (joins the caller's transaction, if any).
+     * @param tags The tag names.
+     * @return A map from tag name to id, containing every tag in {@code tags}.
+     */
+    public static Map<String, Integer> upsertTags(Connection cxn, Collection<String> tags) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        if (tags.isEmpty()) {
+            return ids;
+        }
+        queryIds(cxn, Queries.UPSERT_TAGS, tags, ids);
+
+        // A tag being created by a concurrent transaction is skipped by ON CONFLICT but
+        // is not visible to the statement's snapshot either; a fresh query sees it.
+        if (ids.size() < tags.size()) {
+            List<String> missing = new ArrayList<>();
+            for (String tag : tags) {
+                if (!ids.containsKey(tag)) {
+                    missing.add(tag);
+                }
+            }
+            queryIds(cxn, Queries.TAG_IDS_BY_NAME, missing, ids);
+            if (ids.size() < tags.size()) {
+                throw new SQLException("could not resolve tags " + missing);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Attach tags to a bug in a single batch.
+     * @param cxn The connection to use (joins the caller's transaction, if any).
+     * @param bugId The bug.
+     * @param tagIds The tag ids to attach.
+     */
+    public static void tagBug(Connection cxn, int bugId, Collection<Integer> tagIds) throws SQLException {
+        if (tagIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.INSERT_TAG_BUG_XREF)) {
+            for (int tagId : tagIds) {
+                stmt.setInt(1, tagId);
+                stmt.setInt(2, bugId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void queryIds(Connection cxn, String sql, Collection<String> tags,
+                                 Map<String, Integer> ids) throws SQLException {
+        Array names = cxn.createArrayOf("varchar", tags.toArray());
+        try (PreparedStatement stmt = cxn.prepareStatement(sql)) {
+            stmt.setArray(1, names);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        } finally {
+            names.free();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, time-expiring cache of users keyed by user id.
+ *
+ * Entries are re-read from the database once they are older than the time to live.
+ * When the cache grows past its size, expired entries are dropped and then the least
+ * recently used ones, down to nine tenths of the size.
+ *
+ * Every load and invalidation is stamped from one counter.  Invalidating a user leaves
+ * a marker with a newer stamp, and {@link #put} refuses a user whose load started before
+ * the stamp of the entry it would replace.  So a load that read the old row cannot
+ * overwrite the invalidation of a concurrent update.
+ */
+public class UserCache {
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public UserCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Create a user cache.
+     * @param maxSize The maximum number of users to hold.
+     * @param ttlMillis How long a cached user stays valid.
+     */
+    public UserCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Get a cached user.
+     * @return The user, or {@code null} if it is not cached or has expired.
+     */
+    public User get(long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null || entry.user == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.loadedAt > ttlNanos) {
+            entries.remove(userId, entry);
+            return null;
+        }
+        entry.usedAt = now;
+        return entry.user;
+    }
+
+    /**
+     * Get the stamp for a load that is about to start.  Take it before reading the
+     * user from the database, and pass it to {@link #put}.
+     */
+    public long loadStamp() {
+        return clock.get();
+    }
+
+    /**
+     * Cache a user, unless it was invalidated after its load started.
+     * @param stamp The {@link #loadStamp} taken before the user was read.
+     */
+    public void put(long userId, User user, long stamp) {
+        Entry loaded = new Entry(user, stamp, System.nanoTime());
+        Entry kept = entries.merge(userId, loaded, (old, fresh) -> old.stamp > fresh.stamp ? old : fresh);
+        if (kept == loaded && entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Drop a user from the cache, e.g. after it has been updated.
+     */
+    public void invalidate(long userId) {
+        entries.put(userId, new Entry(null, clock.incrementAndGet(), System.nanoTime()));
+    }
+
+    /**
+     * Get the number of entries, including the markers of recently invalidated users.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    // One thread at a time trims the cache; the others carry on.
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            entries.values().removeIf(entry -> now - entry.loadedAt > ttlNanos);
+            int excess = entries.size() - maxSize / 10 * 9;
+            if (excess > 0) {
+                List<Map.Entry<Long, Entry>> byUse = new ArrayList<>(entries.entrySet());
+                byUse.sort(Comparator.comparingLong(e -> e.getValue().usedAt));
+                for (int i = 0; i < excess && i < byUse.size(); i++) {
+                    entries.remove(byUse.get(i).getKey(), byUse.get(i).getValue());
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class Entry {
+        // null marks an invalidated user
+        final User user;
+        final long stamp;
+        final long loadedAt;
+        volatile long usedAt;
+
+        Entry(User user, long stamp, long loadedAt) {
+            this.user = user;
+            this.stamp = stamp;
+            this.loadedAt = loadedAt;
+            this.usedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains the {@code user_feed} table: each user's bugs in subscribed tags,
+ * written when bugs are tagged so that the home page reads a single index range.
+ *
+ * A fan-out and a subscription backfill of the same tag, running at once under
+ * READ COMMITTED, could each miss the other's uncommitted rows.  Both therefore lock
+ * the tag rows first ({@link #lockTags}, {@link #lockTag}), so one waits for the other
+ * to commit and its next statement sees the result.
+ */
+public class UserFeed {
+    private UserFeed() {
+    }
+
+    /**
+     * Lock a bug's tags before it is tagged and fanned out, holding off new subscriptions
+     * to them until the transaction ends.
+     * @param cxn The connection to use, in a transaction.
+     * @param tagIds The tags.
+     */
+    public static void lockTags(Connection cxn, Collection<Integer> tagIds) throws SQLException {
+        Array ids = cxn.createArrayOf("int4", tagIds.toArray());
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.LOCK_TAGS_FOR_FAN_OUT)) {
+            stmt.setArray(1, ids);
+            stmt.executeQuery().close();
+        } finally {
+            ids.free();
+        }
+    }
+
+    /**
+     * Lock a tag before subscribing to it, holding off fan-outs to it until the
+     * transaction ends.
+     * @param cxn The connection to use, in a transaction.
+     * @return {@code false} if the tag does not exist.
+     */
+    public static boolean lockTag(Connection cxn, int tagId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.LOCK_TAG_FOR_SUBSCRIBE)) {
+            stmt.setInt(1, tagId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Add a bug to the feed of every user subscribed to one of its tags.  Call this
+     * in the same transaction that tags the bug, after {@link #lockTags}.
+     * @param cxn The connection to use.
+     * @param bugId The newly tagged bug.
+     * @return The number of feed entries added.
+     */
+    public static int fanOut(Connection cxn, int bugId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.FAN_OUT_BUG)) {
+            stmt.setInt(1, bugId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Subscribe a user to a tag.
+     * @param cxn The connection to use.
+     * @return {@code true} if the subscription is new.
+     */
+    public static boolean subscribe(Connection cxn, int userId, int tagId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.INSERT_TAG_SUBSCRIPTION)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, tagId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Add a tag's existing bugs to a user's feed.  Call this in the same transaction
+     * that adds the subscription, after {@link #lockTag}.
+     * @param cxn The connection to use.
+     * @return The number of feed entries added.
+     */
+    public static int backfill(Connection cxn, int userId, int tagId) throws SQLException {
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.BACKFILL_FEED)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, tagId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the names of the tags a user is subscribed to.
+     * @param cxn The connection to use.
+     */
+    public static List<String> subscribedTags(Connection cxn, int userId) throws SQLException {
+        List<String> tags = new ArrayList<>();
+        try (PreparedStatement stmt = cxn.prepareStatement(Queries.USER_SUBSCRIBED_TAGS)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tags.add(rs.getString(1));
+                }
+            }
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,114 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs each request on its own virtual thread.
+ *
+ * The Jetty thread that parsed the request puts it in async mode and returns to the
+ * pool, so a request blocked on JDBC or a slow client holds a virtual thread rather
+ * than one of the few platform threads.  Virtual threads are unbounded, so requests
+ * are admitted through a semaphore sized to the connection pools; past that they
+ * wait briefly and are then turned away with a 503 instead of queueing in DBCP.
+ */
+public class VirtualThreadHandler extends HandlerWrapper {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadHandler.class);
+
+    private final ThreadFactory threads;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long admitWaitMillis;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a handler.
+     * @param threads The virtual thread factory.
+     * @param maxConcurrent The number of requests that may run at once.
+     * @param admitWaitMillis How long a request waits to be admitted before it is rejected.
+     */
+    public VirtualThreadHandler(ThreadFactory threads, int maxConcurrent, long admitWaitMillis) {
+        this.threads = threads;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.admitWaitMillis = admitWaitMillis;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException, ServletException {
+        // WebSocket upgrades are passed on to the next handler when this one does not
+        // take them, so they must be answered on the calling thread
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || "websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        baseRequest.setHandled(true);
+        threads.newThread(() -> run(target, baseRequest, request, response, async)).start();
+    }
+
+    private void run(String target, Request baseRequest, HttpServletRequest request,
+                     HttpServletResponse response, AsyncContext async) {
+        try {
+            if (!permits.tryAcquire(admitWaitMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                response.sendError(503, "Server busy, please try again shortly.");
+                return;
+            }
+            try {
+                super.handle(target, baseRequest, request, response);
+                if (!baseRequest.isHandled()) {
+                    response.sendError(404);
+                }
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ServletException | RuntimeException ex) {
+            logger.error("request {} failed", target, ex);
+            if (!response.isCommitted()) {
+                response.setStatus(500);
+            }
+        } finally {
+            async.complete();
+        }
+    }
+
+    /**
+     * Get the number of requests running now.
+     */
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of requests waiting to be admitted.
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Get the number of requests rejected because none could be admitted in time.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,133 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Service;
+import spark.embeddedserver.EmbeddedServer;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.JettyHandler;
+import spark.embeddedserver.jetty.SocketConnectorFactory;
+import spark.embeddedserver.jetty.websocket.WebSocketServletContextHandlerFactory;
+import spark.http.matching.MatcherFilter;
+import spark.ssl.SslStores;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Spark's embedded Jetty, with request handling moved onto virtual threads by a
+ * {@link VirtualThreadHandler}.  Jetty keeps a small platform thread pool for
+ * accepting connections and parsing requests.
+ *
+ * Spark 2.5 builds its Jetty server with no way to supply a thread pool or wrap
+ * the handler, so this replaces the whole embedded server; it sets up the same
+ * connectors and WebSocket context as Spark's own.
+ */
+public class VirtualThreadJettyServer implements EmbeddedServer {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadJettyServer.class);
+    private static final String IDENTIFIER = "virtual-thread-jetty";
+
+    private final Handler sparkHandler;
+    private final VirtualThreadHandler dispatcher;
+    private final int platformThreads;
+    private Map<String, Class<?>> webSocketHandlers;
+    private Optional<Integer> webSocketIdleTimeoutMillis;
+    private Server server;
+
+    private VirtualThreadJettyServer(Handler sparkHandler, VirtualThreadHandler dispatcher, int platformThreads) {
+        this.sparkHandler = sparkHandler;
+        this.dispatcher = dispatcher;
+        this.platformThreads = platformThreads;
+    }
+
+    /**
+     * Make a service run on this server.  Call this before mapping any route, since
+     * mapping the first route starts the server.
+     * @param http The service.
+     * @param dispatcher The handler that runs requests on virtual threads.
+     * @param platformThreads The size of Jetty's own thread pool.
+     */
+    public static void install(Service http, VirtualThreadHandler dispatcher, int platformThreads) {
+        EmbeddedServers.add(IDENTIFIER, (routes, staticFiles, hasMultipleHandlers) -> {
+            MatcherFilter filter = new MatcherFilter(routes, staticFiles, false, hasMultipleHandlers);
+            filter.init(null);
+            return new VirtualThreadJettyServer(new JettyHandler(filter), dispatcher, platformThreads);
+        });
+        // Spark 2.5 has no public way to pick the embedded server (2.6 adds one)
+        try {
+            Field field = Service.class.getDeclaredField("embeddedServerIdentifier");
+            field.setAccessible(true);
+            field.set(http, IDENTIFIER);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("cannot select the embedded server in this Spark version", ex);
+        }
+    }
+
+    @Override
+    public void configureWebSockets(Map<String, Class<?>> webSocketHandlers,
+                                    Optional<Integer> webSocketIdleTimeoutMillis) {
+        this.webSocketHandlers = webSocketHandlers;
+        this.webSocketIdleTimeoutMillis = webSocketIdleTimeoutMillis;
+    }
+
+    @Override
+    public void ignite(String host, int port, SslStores sslStores, CountDownLatch latch,
+                       int maxThreads, int minThreads, int threadIdleTimeoutMillis) {
+        int threads = maxThreads > 0 ? maxThreads : platformThreads;
+        QueuedThreadPool pool = new QueuedThreadPool(threads, Math.min(threads, 8),
+                                                     threadIdleTimeoutMillis > 0 ? threadIdleTimeoutMillis : 60000);
+        pool.setName("jetty-io");
+        server = new Server(pool);
+
+        ServerConnector connector;
+        if (sslStores == null) {
+            connector = SocketConnectorFactory.createSocketConnector(server, host, port);
+        } else {
+            connector = SocketConnectorFactory.createSecureSocketConnector(server, host, port, sslStores);
+        }
+        server.setConnectors(new Connector[]{connector});
+
+        dispatcher.setHandler(sparkHandler);
+        ServletContextHandler webSockets =
+                WebSocketServletContextHandlerFactory.create(webSocketHandlers, webSocketIdleTimeoutMillis);
+        if (webSockets == null) {
+            server.setHandler(dispatcher);
+        } else {
+            HandlerList handlers = new HandlerList();
+            handlers.setHandlers(new Handler[]{dispatcher, webSockets});
+            server.setHandler(handlers);
+        }
+
+        try {
+            logger.info("listening on {}:{}, handling requests on virtual threads ({} platform threads)",
+                        host, port, threads);
+            server.start();
+            latch.countDown();
+            server.join();
+        } catch (Exception ex) {
+            logger.error("embedded Jetty failed", ex);
+            System.exit(100);
+        }
+    }
+
+    @Override
+    public void extinguish() {
+        try {
+            if (server != null) {
+                server.stop();
+            }
+        } catch (Exception ex) {
+            logger.error("cannot stop embedded Jetty", ex);
+            System.exit(100);
+        }
+    }
+}
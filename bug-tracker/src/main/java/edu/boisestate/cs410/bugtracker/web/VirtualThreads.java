@@ -0,0 +1,105 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access to virtual threads, which need JDK 21.
+ *
+ * The build targets an older release, so the thread builder is looked up
+ * reflectively, and startup fails with a clear message on a JDK without it.
+ */
+public class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final LongAdder pinnedCount = new LongAdder();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Check whether this JDK has virtual threads.
+     */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Get a factory for virtual threads.
+     * @param prefix The thread name prefix; threads are numbered after it.
+     * @throws IllegalStateException if this JDK has no virtual threads.
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("virtual threads need JDK 21 or later, running " + Runtime.version());
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> type = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = type.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) type.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("cannot create virtual threads", ex);
+        }
+    }
+
+    /**
+     * Refuse a JDBC driver that would pin virtual threads to their carriers.  Before JDK 24,
+     * a virtual thread that blocks inside {@code synchronized} holds its carrier thread,
+     * and PostgreSQL drivers before 42.6 do all their socket I/O inside {@code synchronized},
+     * so concurrent queries would be limited to the carrier thread count.
+     * @param meta The metadata of a connection from the driver.
+     * @throws IllegalStateException if the driver pins virtual threads on this JDK.
+     */
+    public static void checkDriver(DatabaseMetaData meta) throws SQLException {
+        int major = meta.getDriverMajorVersion();
+        int minor = meta.getDriverMinorVersion();
+        if (Runtime.version().feature() < 24 && (major < 42 || (major == 42 && minor < 6))) {
+            throw new IllegalStateException(meta.getDriverName() + " " + meta.getDriverVersion() +
+                    " pins virtual threads on JDK " + Runtime.version().feature() +
+                    "; use PostgreSQL JDBC 42.6 or later, or JDK 24 or later, to enable http.virtualThreads");
+        }
+    }
+
+    /**
+     * Watch for virtual threads pinned to their carrier, logging where each one was
+     * pinned.  This uses the {@code jdk.VirtualThreadPinned} flight recorder event, which
+     * is cheaper than {@code -Djdk.tracePinnedThreads} and also reports how long the
+     * carrier was held.
+     * @param threshold Only report pins at least this long.
+     */
+    public static void monitorPinning(Duration threshold) {
+        RecordingStream stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", event -> {
+            pinnedCount.increment();
+            StringBuilder where = new StringBuilder();
+            if (event.getStackTrace() != null) {
+                List<RecordedFrame> frames = event.getStackTrace().getFrames();
+                for (int i = 0; i < frames.size() && i < 8; i++) {
+                    RecordedFrame frame = frames.get(i);
+                    where.append("\n    at ").append(frame.getMethod().getType().getName())
+                         .append('.').append(frame.getMethod().getName())
+                         .append(':').append(frame.getLineNumber());
+                }
+            }
+            logger.warn("virtual thread pinned to its carrier for {} ms{}", event.getDuration().toMillis(), where);
+        });
+        stream.startAsync();
+    }
+
+    /**
+     * Get the number of pins reported since {@link #monitorPinning} started.
+     */
+    public static long getPinnedCount() {
+        return pinnedCount.sum();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Live updates: pages mark an alert with data-live-topics="bugs tag:ui ...", and
+ * this script subscribes to those topics over the /events WebSocket and shows the
+ * alert when something changes, instead of the user reloading to check.
+ */
+(function () {
+    'use strict';
+
+    var alerts = document.querySelectorAll('[data-live-topics]');
+    if (alerts.length === 0 || !window.WebSocket) {
+        return;
+    }
+    var topics = [];
+    for (var i = 0; i < alerts.length; i++) {
+        topics = topics.concat(alerts[i].getAttribute('data-live-topics').split(/\s+/));
+    }
+
+    var delay = 1000;
+    var keepAlive = null;
+
+    function showAlerts() {
+        for (var i = 0; i < alerts.length; i++) {
+            alerts[i].classList.remove('hidden');
+        }
+    }
+
+    // a WebSocket cannot send the session cookie's user, so exchange it for a ticket
+    function connect() {
+        var xhr = new XMLHttpRequest();
+        xhr.open('GET', '/events/ticket');
+        xhr.onload = function () {
+            if (xhr.status === 200) {
+                open(xhr.responseText);
+            } else if (xhr.status !== 401) {
+                retry();
+            }
+        };
+        xhr.onerror = retry;
+        xhr.send();
+    }
+
+    function open(ticket) {
+        var scheme = location.protocol === 'https:' ? 'wss://' : 'ws://';
+        var socket = new WebSocket(scheme + location.host + '/events?ticket=' + encodeURIComponent(ticket));
+        socket.onopen = function () {
+            delay = 1000;
+            socket.send(JSON.stringify({subscribe: topics}));
+            keepAlive = setInterval(function () {
+                socket.send('{}');
+            }, 60000);
+        };
+        socket.onmessage = showAlerts;
+        socket.onclose = function (event) {
+            clearInterval(keepAlive);
+            // 1013: the server dropped us for falling behind, so we have missed events
+            if (event.code === 1013) {
+                showAlerts();
+            }
+            retry();
+        };
+    }
+
+    function retry() {
+        setTimeout(connect, delay);
+        delay = Math.min(delay * 2, 60000);
+    }
+
+    connect();
+})();
@@ -0,0 +1,16 @@
+-- Full-text search over bug titles, tags and bodies.
+ALTER TABLE bugs ADD COLUMN IF NOT EXISTS search_vector TSVECTOR NULL;
+
+CREATE INDEX IF NOT EXISTS ix_bugs_search ON bugs USING GIN (search_vector);
+
+UPDATE bugs
+   SET search_vector = setweight(to_tsvector('english', bug_title), 'A') ||
+                       setweight(to_tsvector('english', coalesce(t.tags, '')), 'B') ||
+                       setweight(to_tsvector('english', bug_body), 'C')
+  FROM (SELECT aa.bug_id, string_agg(cc.tag, ' ') AS tags
+          FROM bugs aa
+          LEFT JOIN tag_bug_xref bb ON bb.bug_id = aa.bug_id
+          LEFT JOIN tags cc ON cc.tag_id = bb.tag_id
+         GROUP BY aa.bug_id) t
+ WHERE t.bug_id = bugs.bug_id
+   AND bugs.search_vector IS NULL;
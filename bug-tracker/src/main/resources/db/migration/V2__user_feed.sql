@@ -0,0 +1,18 @@
+-- Bugs in each user's subscribed tags, filled when bugs are tagged and
+-- when users subscribe; create_date is copied from bugs for the sort.
+CREATE TABLE IF NOT EXISTS user_feed
+(
+    user_id INTEGER NOT NULL REFERENCES users (user_id),
+    bug_id INTEGER NOT NULL REFERENCES bugs (bug_id),
+    create_date DATE NOT NULL,
+    CONSTRAINT pk_user_feed PRIMARY KEY (user_id, bug_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_user_feed_recent ON user_feed (user_id, create_date DESC, bug_id DESC);
+
+INSERT INTO user_feed (user_id, bug_id, create_date)
+SELECT DISTINCT aa.user_id, cc.bug_id, cc.create_date
+  FROM user_tag_subscription aa
+  JOIN tag_bug_xref bb ON bb.tag_id = aa.tag_id
+  JOIN bugs cc ON cc.bug_id = bb.bug_id
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,53 @@
+-- Bug counts per milestone, kept up to date by triggers on bugs so the
+-- milestone list does not have to count bugs.  Closed means close_date is set.
+CREATE TABLE IF NOT EXISTS milestone_counts
+(
+    milestone_id INTEGER PRIMARY KEY NOT NULL REFERENCES milestones (milestone_id),
+    open_count INTEGER NOT NULL DEFAULT 0,
+    closed_count INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE OR REPLACE FUNCTION init_milestone_counts() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO milestone_counts (milestone_id) VALUES (NEW.milestone_id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS milestones_init_counts ON milestones;
+CREATE TRIGGER milestones_init_counts AFTER INSERT ON milestones
+    FOR EACH ROW EXECUTE PROCEDURE init_milestone_counts();
+
+CREATE OR REPLACE FUNCTION maintain_milestone_counts() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.milestone_id IS NOT NULL THEN
+        UPDATE milestone_counts
+           SET open_count = open_count - CASE WHEN OLD.close_date IS NULL THEN 1 ELSE 0 END,
+               closed_count = closed_count - CASE WHEN OLD.close_date IS NULL THEN 0 ELSE 1 END
+         WHERE milestone_id = OLD.milestone_id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.milestone_id IS NOT NULL THEN
+        UPDATE milestone_counts
+           SET open_count = open_count + CASE WHEN NEW.close_date IS NULL THEN 1 ELSE 0 END,
+               closed_count = closed_count + CASE WHEN NEW.close_date IS NULL THEN 0 ELSE 1 END
+         WHERE milestone_id = NEW.milestone_id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS bugs_milestone_counts ON bugs;
+CREATE TRIGGER bugs_milestone_counts AFTER INSERT OR DELETE OR UPDATE OF milestone_id, close_date ON bugs
+    FOR EACH ROW EXECUTE PROCEDURE maintain_milestone_counts();
+
+-- recount from scratch; the triggers keep the counts from here on
+INSERT INTO milestone_counts (milestone_id, open_count, closed_count)
+SELECT aa.milestone_id,
+       count(bb.bug_id) FILTER (WHERE bb.close_date IS NULL),
+       count(bb.bug_id) FILTER (WHERE bb.close_date IS NOT NULL)
+  FROM milestones aa
+  LEFT JOIN bugs bb ON bb.milestone_id = aa.milestone_id
+ GROUP BY aa.milestone_id
+ON CONFLICT (milestone_id) DO UPDATE
+   SET open_count = excluded.open_count,
+       closed_count = excluded.closed_count;
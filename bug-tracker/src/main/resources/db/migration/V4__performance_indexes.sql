@@ -0,0 +1,19 @@
+-- Indexes for the hot route queries; see Index_Coverage.txt for which
+-- query each one serves.  These take a write lock on their table while
+-- they build, so apply to a large existing database off-peak.
+
+-- USER_BUGS: a user's bugs, newest first
+CREATE INDEX IF NOT EXISTS ix_bugs_user_created ON bugs (user_id, create_date DESC);
+
+-- MILESTONE_BUGS_PAGE: a milestone's bugs, paged on (create_date, bug_id)
+CREATE INDEX IF NOT EXISTS ix_bugs_milestone_created ON bugs (milestone_id, create_date, bug_id);
+
+-- BUG_LIST_PAGE: all bugs, paged on (create_date, bug_id)
+CREATE INDEX IF NOT EXISTS ix_bugs_created ON bugs (create_date, bug_id);
+
+-- TAGS_FOR_BUGS, FAN_OUT_BUG, REINDEX_BUG_SEARCH: tags by bug; the primary
+-- key leads on tag_id and cannot serve these
+CREATE INDEX IF NOT EXISTS ix_tag_bug_xref_bug ON tag_bug_xref (bug_id, tag_id);
+
+-- a user's subscriptions; the primary key leads on tag_id
+CREATE INDEX IF NOT EXISTS ix_user_tag_subscription_user ON user_tag_subscription (user_id, tag_id);
@@ -0,0 +1,50 @@
+-- Row versions for conditional GETs: the bug and milestone pages build their
+-- ETags from these, so anything shown on a page must bump its row's version.
+ALTER TABLE bugs ADD COLUMN IF NOT EXISTS row_version BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE bugs ADD COLUMN IF NOT EXISTS modified_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+ALTER TABLE milestones ADD COLUMN IF NOT EXISTS row_version BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE milestones ADD COLUMN IF NOT EXISTS modified_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+CREATE OR REPLACE FUNCTION bump_row_version() RETURNS trigger AS $$
+BEGIN
+    NEW.row_version := OLD.row_version + 1;
+    NEW.modified_at := now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Tags are written before the bug's search vector is rebuilt, which updates
+-- the bug row; anything else that changes a bug's tags must touch the bug too.
+DROP TRIGGER IF EXISTS bugs_row_version ON bugs;
+CREATE TRIGGER bugs_row_version BEFORE UPDATE ON bugs
+    FOR EACH ROW EXECUTE PROCEDURE bump_row_version();
+
+DROP TRIGGER IF EXISTS milestones_row_version ON milestones;
+CREATE TRIGGER milestones_row_version BEFORE UPDATE ON milestones
+    FOR EACH ROW EXECUTE PROCEDURE bump_row_version();
+
+-- A milestone's page lists its bugs, so adding, changing, moving or removing
+-- one of them bumps the milestone.
+CREATE OR REPLACE FUNCTION touch_bug_milestones() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        IF NEW.milestone_id IS NOT NULL THEN
+            UPDATE milestones SET modified_at = now() WHERE milestone_id = NEW.milestone_id;
+        END IF;
+    ELSE
+        IF OLD.milestone_id IS NOT NULL THEN
+            UPDATE milestones SET modified_at = now() WHERE milestone_id = OLD.milestone_id;
+        END IF;
+        IF TG_OP = 'UPDATE' THEN
+            IF NEW.milestone_id IS DISTINCT FROM OLD.milestone_id AND NEW.milestone_id IS NOT NULL THEN
+                UPDATE milestones SET modified_at = now() WHERE milestone_id = NEW.milestone_id;
+            END IF;
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS bugs_touch_milestones ON bugs;
+CREATE TRIGGER bugs_touch_milestones AFTER INSERT OR UPDATE OR DELETE ON bugs
+    FOR EACH ROW EXECUTE PROCEDURE touch_bug_milestones();
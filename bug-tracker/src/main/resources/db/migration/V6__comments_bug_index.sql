@@ -0,0 +1,3 @@
+-- EXPORT_BUGS: each bug's comments.  Without this every exported bug
+-- scans the comments table.
+CREATE INDEX IF NOT EXISTS ix_comments_bug ON comments (bug_id, comment_date, comment_id);
@@ -0,0 +1,16 @@
+-- The bulk importer inserts thousands of bugs per transaction, and the per-row
+-- triggers below would update the same milestone_counts and milestones rows once
+-- per bug.  An import sets bugtracker.bulk_import for its own transaction and
+-- applies both changes itself, once per batch.  (session_replication_role would
+-- need a superuser and would skip the foreign key checks as well.)
+DROP TRIGGER IF EXISTS bugs_milestone_counts ON bugs;
+CREATE TRIGGER bugs_milestone_counts AFTER INSERT OR DELETE OR UPDATE OF milestone_id, close_date ON bugs
+    FOR EACH ROW
+    WHEN (current_setting('bugtracker.bulk_import', true) IS DISTINCT FROM 'on')
+    EXECUTE PROCEDURE maintain_milestone_counts();
+
+DROP TRIGGER IF EXISTS bugs_touch_milestones ON bugs;
+CREATE TRIGGER bugs_touch_milestones AFTER INSERT OR UPDATE OR DELETE ON bugs
+    FOR EACH ROW
+    WHEN (current_setting('bugtracker.bulk_import', true) IS DISTINCT FROM 'on')
+    EXECUTE PROCEDURE touch_bug_milestones();
@@ -0,0 +1,119 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConditionalGetTest {
+    private static final User ALICE = new User(1, "alice", "alice@example.com", "Alice", 0, 0);
+    private static final Timestamp MODIFIED = Timestamp.valueOf("2016-11-22 10:15:30");
+
+    private final Map<String, String> headers = new HashMap<>();
+    private int status = 200;
+    private final Response response = new Response() {
+        @Override
+        public void header(String name, String value) {
+            headers.put(name, value);
+        }
+
+        @Override
+        public void status(int code) {
+            status = code;
+        }
+    };
+
+    private static Request ifNoneMatch(String value) {
+        return requestWith("If-None-Match", value);
+    }
+
+    private static Request requestWith(String header, String value) {
+        return new Request() {
+            @Override
+            public String headers(String name) {
+                return name.equals(header) ? value : null;
+            }
+        };
+    }
+
+    @Test
+    public void etagIsWeakAndTracksVersionAndUser() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        assertTrue(etag, etag.startsWith("W/\"bug7-3-1-") && etag.endsWith("\""));
+        assertEquals(etag, ConditionalGet.etag("bug", 7, 3, ALICE));
+        assertNotEquals(etag, ConditionalGet.etag("bug", 7, 4, ALICE));
+        assertNotEquals(etag, ConditionalGet.etag("milestone", 7, 3, ALICE));
+        User renamed = new User(1, "alice", "alice@example.com", "Alice B.", 0, 0);
+        assertNotEquals(etag, ConditionalGet.etag("bug", 7, 3, renamed));
+    }
+
+    @Test
+    public void matchingTagIsNotModified() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        assertTrue(ConditionalGet.notModified(ifNoneMatch(etag), response, etag, MODIFIED));
+        assertEquals(304, status);
+    }
+
+    @Test
+    public void strongFormOfTheTagMatchesToo() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        assertTrue(ConditionalGet.notModified(ifNoneMatch("\"other\", " + etag.substring(2)), response, etag, MODIFIED));
+    }
+
+    @Test
+    public void wildcardMatches() {
+        assertTrue(ConditionalGet.notModified(ifNoneMatch("*"), response, ConditionalGet.etag("bug", 7, 3, ALICE), MODIFIED));
+    }
+
+    @Test
+    public void staleTagIsModified() {
+        String old = ConditionalGet.etag("bug", 7, 2, ALICE);
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        assertFalse(ConditionalGet.notModified(ifNoneMatch(old), response, etag, MODIFIED));
+        assertFalse(ConditionalGet.notModified(ifNoneMatch(null), response, etag, MODIFIED));
+        assertEquals(200, status);
+    }
+
+    @Test
+    public void setsValidatorsAndCacheControl() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        ConditionalGet.notModified(ifNoneMatch(null), response, etag, MODIFIED);
+        assertEquals(etag, headers.get("ETag"));
+        assertNotNull(headers.get("Last-Modified"));
+        assertTrue(headers.get("Last-Modified").endsWith("GMT"));
+        assertEquals("private, no-cache", headers.get("Cache-Control"));
+    }
+
+    @Test
+    public void lastModifiedIsAnImfFixdate() {
+        // a row changed after the server started, on a single-digit day
+        LocalDateTime future = LocalDateTime.now().plusYears(1).withDayOfMonth(1).withHour(12).withMinute(5).withSecond(7);
+        ConditionalGet.notModified(ifNoneMatch(null), response, "W/\"x\"", Timestamp.valueOf(future));
+        assertTrue(headers.get("Last-Modified"),
+                   headers.get("Last-Modified").matches("[A-Z][a-z]{2}, 01 [A-Z][a-z]{2} \\d{4} \\d{2}:\\d{2}:\\d{2} GMT"));
+    }
+
+    @Test
+    public void ifModifiedSinceIsAnsweredWithoutAnEtag() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        ConditionalGet.notModified(ifNoneMatch(null), response, etag, MODIFIED);
+        String lastModified = headers.get("Last-Modified");
+        assertTrue(ConditionalGet.notModified(requestWith("If-Modified-Since", lastModified), response, etag, MODIFIED));
+        assertEquals(304, status);
+    }
+
+    @Test
+    public void olderIfModifiedSinceIsModified() {
+        String etag = ConditionalGet.etag("bug", 7, 3, ALICE);
+        assertFalse(ConditionalGet.notModified(requestWith("If-Modified-Since", "Sun, 06 Nov 1994 08:49:37 GMT"),
+                                               response, etag, MODIFIED));
+        assertFalse(ConditionalGet.notModified(requestWith("If-Modified-Since", "yesterday"), response, etag, MODIFIED));
+        assertEquals(200, status);
+    }
+}
@@ -0,0 +1,53 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class CsvReaderTest {
+    @Test
+    public void readsPlainRecords() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a,b,c\n1,,3\n"));
+        assertArrayEquals(new String[]{"a", "b", "c"}, csv.next());
+        assertArrayEquals(new String[]{"1", "", "3"}, csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void readsQuotedFields() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"\r\nnext\r\n"));
+        assertArrayEquals(new String[]{"a,b", "say \"hi\"", "two\nlines"}, csv.next());
+        assertEquals(1, csv.getRecordLine());
+        assertArrayEquals(new String[]{"next"}, csv.next());
+        assertEquals(3, csv.getRecordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void lastRecordNeedNotEndWithANewline() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("x,y"));
+        assertArrayEquals(new String[]{"x", "y"}, csv.next());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void skipsPastAMalformedRecord() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("\"a\"b,c\nok\n"));
+        try {
+            csv.next();
+            fail("expected a malformed record");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 1"));
+        }
+        assertArrayEquals(new String[]{"ok"}, csv.next());
+        assertEquals(2, csv.getRecordLine());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnterminatedQuote() throws IOException {
+        new CsvReader(new StringReader("\"never closed\n")).next();
+    }
+}
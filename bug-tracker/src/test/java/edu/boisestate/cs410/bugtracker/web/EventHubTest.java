@@ -0,0 +1,38 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class EventHubTest {
+    private final EventHub hub = new EventHub(16, 4, userId -> Collections.emptyList());
+
+    @Test
+    public void ticketRedeemsToItsUser() {
+        String ticket = hub.issueTicket(42);
+        assertEquals(Integer.valueOf(42), hub.redeemTicket(ticket));
+    }
+
+    @Test
+    public void ticketIsSingleUse() {
+        String ticket = hub.issueTicket(42);
+        hub.redeemTicket(ticket);
+        assertNull(hub.redeemTicket(ticket));
+    }
+
+    @Test
+    public void ticketsAreUrlSafeAndDistinct() {
+        String a = hub.issueTicket(1);
+        String b = hub.issueTicket(1);
+        assertNotEquals(a, b);
+        assertTrue(a, a.matches("[A-Za-z0-9_-]{22}"));
+    }
+
+    @Test
+    public void unknownTicketsAreRefused() {
+        assertNull(hub.redeemTicket("not-a-ticket"));
+        assertNull(hub.redeemTicket(null));
+    }
+}
@@ -0,0 +1,56 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonParserTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void decodesEscapes() {
+        Map<String, Object> value = (Map<String, Object>) JsonParser.parse(
+                "{\"s\": \"\\u0041\\/\\b\\f\", \"n\": -12, \"d\": 1.5e2, \"t\": true, \"z\": null}");
+        assertEquals("A/\b\f", value.get("s"));
+        assertEquals(-12L, value.get("n"));
+        assertEquals(150.0, value.get("d"));
+        assertEquals(Boolean.TRUE, value.get("t"));
+        assertTrue(value.containsKey("z"));
+        assertNull(value.get("z"));
+    }
+
+    @Test
+    public void readsNestedArrays() {
+        List<?> value = (List<?>) JsonParser.parse(" [ [], [1, [\"x\"]] ] ");
+        assertEquals(2, value.size());
+        assertEquals(Arrays.asList(1L, Arrays.asList("x")), value.get(1));
+    }
+
+    @Test
+    public void readsWhatTheWriterWrites() throws IOException {
+        String tricky = "quote \" backslash \\ newline \n tab \t bell \u0007 separator \u2028 snowman \u2603";
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginArray().value(tricky).endArray();
+        assertEquals(Arrays.asList(tricky), JsonParser.parse(out.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRawControlCharacters() {
+        JsonParser.parse("\"a\nb\"");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadEscapes() {
+        JsonParser.parse("\"\\x41\"");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTrailingText() {
+        JsonParser.parse("{} {}");
+    }
+}
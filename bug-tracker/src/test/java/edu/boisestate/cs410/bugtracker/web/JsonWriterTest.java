@@ -0,0 +1,39 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class JsonWriterTest {
+    @Test
+    public void quoteEscapesSpecialCharacters() {
+        assertEquals("\"a\\\"b\\\\c\"", JsonWriter.quote("a\"b\\c"));
+        assertEquals("\"\\n\\r\\t\"", JsonWriter.quote("\n\r\t"));
+        assertEquals("\"\\u0001\\u001f\"", JsonWriter.quote("\u0001\u001f"));
+        assertEquals("\"\\u2028\\u2029\"", JsonWriter.quote("\u2028\u2029"));
+        assertEquals("\"</script>\"", JsonWriter.quote("</script>"));
+    }
+
+    @Test
+    public void writerSeparatesMembersAndElements() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("id").value(7);
+        json.name("tags").beginArray().value("a").value("b").endArray();
+        json.name("milestone").nullValue();
+        json.name("comments").rawValue("[{\"id\":1}]");
+        json.endObject();
+        assertEquals("{\"id\":7,\"tags\":[\"a\",\"b\"],\"milestone\":null,\"comments\":[{\"id\":1}]}", out.toString());
+    }
+
+    @Test
+    public void writerEscapesNamesAndValues() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginObject().name("a\"b").value("line\nbreak").endObject();
+        assertEquals("{\"a\\\"b\":\"line\\nbreak\"}", out.toString());
+    }
+}
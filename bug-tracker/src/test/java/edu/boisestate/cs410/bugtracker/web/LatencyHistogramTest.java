@@ -0,0 +1,64 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.quantileMicros(0.5));
+        assertEquals(0, h.quantileMicros(0.99));
+    }
+
+    @Test
+    public void bucketsCoverTheirValuesWithinAnEighth() {
+        for (long micros = 0; micros < 5000000; micros = micros * 5 / 4 + 1) {
+            long upper = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(micros));
+            assertTrue("bucket of " + micros + " ends at " + upper, upper >= micros);
+            assertTrue("bucket of " + micros + " ends at " + upper, upper - micros <= micros / 8);
+        }
+    }
+
+    @Test
+    public void hugeLatenciesGoInTheLastBucket() {
+        int last = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(last, LatencyHistogram.bucketIndex(1L << 50));
+        assertTrue(LatencyHistogram.bucketIndex(1L << 39) <= last);
+    }
+
+    @Test
+    public void quantilesAreWithinBucketError() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            h.record(ms * 1000000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMaxMicros());
+        assertEquals(500500000, h.getSumMicros());
+
+        long p50 = h.quantileMicros(0.5);
+        assertTrue("p50 " + p50, p50 >= 500000 && p50 <= 500000 * 9 / 8);
+        long p99 = h.quantileMicros(0.99);
+        assertTrue("p99 " + p99, p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, h.quantileMicros(1.0));
+    }
+
+    @Test
+    public void quantilesNeverExceedTheMaximum() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(1001000);
+        assertEquals(1001, h.getMaxMicros());
+        assertEquals(1001, h.quantileMicros(0.5));
+    }
+
+    @Test
+    public void negativeLatenciesCountAsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5000);
+        assertEquals(1, h.getCount());
+        assertEquals(0, h.getSumMicros());
+    }
+}
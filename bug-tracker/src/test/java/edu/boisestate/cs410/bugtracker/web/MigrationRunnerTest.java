@@ -0,0 +1,53 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MigrationRunnerTest {
+    @Test
+    public void splitsOnSemicolons() {
+        assertEquals(Arrays.asList("CREATE TABLE a (x INT)", "DROP TABLE b", "SELECT 1"),
+                     MigrationRunner.splitStatements("CREATE TABLE a (x INT);\nDROP TABLE b;\n\n;SELECT 1"));
+    }
+
+    @Test
+    public void dropsCommentLines() {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"),
+                     MigrationRunner.splitStatements("-- first; with a semicolon\nSELECT 1;\n  -- second\nSELECT 2;\n"));
+    }
+
+    @Test
+    public void keepsDollarQuotedBodiesWhole() {
+        String function = "CREATE FUNCTION f() RETURNS trigger AS $$\nBEGIN\n    RETURN NULL;\nEND;\n$$ LANGUAGE plpgsql";
+        assertEquals(Arrays.asList(function, "SELECT 1"),
+                     MigrationRunner.splitStatements(function + ";\nSELECT 1;"));
+    }
+
+    @Test
+    public void keepsQuotedSemicolons() {
+        assertEquals(Arrays.asList("INSERT INTO t VALUES ('a;b', 'it''s; fine')", "SELECT ';'"),
+                     MigrationRunner.splitStatements("INSERT INTO t VALUES ('a;b', 'it''s; fine');\nSELECT ';';"));
+    }
+
+    @Test
+    public void quotesAndDollarsDoNotMix() {
+        String function = "CREATE FUNCTION g() RETURNS text AS $$ SELECT 'don''t; stop' $$ LANGUAGE sql";
+        assertEquals(Arrays.asList(function, "SELECT '$$;'"),
+                     MigrationRunner.splitStatements(function + ";\nSELECT '$$;';"));
+    }
+
+    @Test
+    public void migrationsAreListedInOrder() throws IOException {
+        List<MigrationRunner.Migration> migrations = new MigrationRunner().loadMigrations();
+        assertFalse(migrations.isEmpty());
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).version);
+            assertFalse(migrations.get(i).name, MigrationRunner.splitStatements(migrations.get(i).script).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+import spark.Request;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PageRequestTest {
+    private static Request request(String... params) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < params.length; i += 2) {
+            values.put(params[i], params[i + 1]);
+        }
+        return new Request() {
+            @Override
+            public String queryParams(String name) {
+                return values.get(name);
+            }
+        };
+    }
+
+    @Test
+    public void firstPageHasNoCondition() {
+        PageRequest page = PageRequest.fromRequest(request());
+        assertEquals(PageRequest.DEFAULT_SIZE, page.getSize());
+        assertFalse(page.isBackward());
+        assertEquals("TRUE", page.where("create_date", "bug_id", "date"));
+        assertEquals("create_date DESC, bug_id DESC", page.orderBy("create_date", "bug_id"));
+    }
+
+    @Test
+    public void afterCursorPagesToOlderRows() {
+        PageRequest page = PageRequest.fromRequest(request("size", "10", "after", "2016-11-22_42"));
+        assertEquals(10, page.getSize());
+        assertFalse(page.isBackward());
+        assertEquals("(create_date, bug_id) < (CAST(? AS date), ?)", page.where("create_date", "bug_id", "date"));
+    }
+
+    @Test
+    public void beforeCursorPagesBackToNewerRows() {
+        PageRequest page = PageRequest.fromRequest(request("before", "0.0607927_7"));
+        assertTrue(page.isBackward());
+        assertEquals("(rank, bug_id) > (CAST(? AS real), ?)", page.where("rank", "bug_id", "real"));
+        assertEquals("rank ASC, bug_id ASC", page.orderBy("rank", "bug_id"));
+    }
+
+    @Test
+    public void pageSizeIsCappedAtTheMaximum() {
+        assertEquals(50, PageRequest.fromRequest(request("size", "5000"), 50).getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroPageSizeIsRejected() {
+        PageRequest.fromRequest(request("size", "0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorWithoutIdIsRejected() {
+        PageRequest.fromRequest(request("after", "2016-11-22"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorWithBadDateIsRejected() {
+        PageRequest.fromRequest(request("after", "2016-13-45_1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorWithJunkKeyIsRejected() {
+        PageRequest.fromRequest(request("before", "'; DROP TABLE bugs_1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorWithBadIdIsRejected() {
+        PageRequest.fromRequest(request("after", "2016-11-22_x"));
+    }
+
+    @Test
+    public void finishLinksToTheNextPage() {
+        PageRequest page = PageRequest.fromRequest(request("size", "2"));
+        PageRequest.Page<Integer> result = page.finish(Arrays.asList(5, 4, 3), r -> "2016-11-0" + r, r -> r, "/buglist?");
+        assertEquals(Arrays.asList(5, 4), result.getItems());
+        assertEquals("/buglist?size=2&after=2016-11-04_4", result.getNext());
+        assertNull(result.getPrev());
+    }
+
+    @Test
+    public void finishReversesBackwardPages() {
+        PageRequest page = PageRequest.fromRequest(request("size", "2", "before", "2016-11-03_3"));
+        // fetched oldest first, one extra
+        PageRequest.Page<Integer> result = page.finish(Arrays.asList(4, 5, 6), r -> "2016-11-0" + r, r -> r, "/buglist?");
+        assertEquals(Arrays.asList(5, 4), result.getItems());
+        assertEquals("/buglist?size=2&after=2016-11-04_4", result.getNext());
+        assertEquals("/buglist?size=2&before=2016-11-05_5", result.getPrev());
+    }
+}
@@ -0,0 +1,35 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PasswordHasherTest {
+    // the lowest cost BCrypt allows, to keep the tests fast
+    private final PasswordHasher hasher = new PasswordHasher(4, 1, 4);
+
+    @Test
+    public void hashAtTheCurrentCostIsKept() {
+        assertFalse(hasher.needsRehash("$2a$04$abcdefghijklmnopqrstuuABCDEFGHIJKLMNOPQRSTUVWXYZ01234"));
+    }
+
+    @Test
+    public void hashAtAnotherCostIsUpgraded() {
+        assertTrue(hasher.needsRehash("$2a$10$abcdefghijklmnopqrstuuABCDEFGHIJKLMNOPQRSTUVWXYZ01234"));
+    }
+
+    @Test
+    public void malformedHashesAreUpgraded() {
+        assertTrue(hasher.needsRehash("plaintext"));
+        assertTrue(hasher.needsRehash("$2a$xx$abcdefghijklmnopqrstuu"));
+        assertTrue(hasher.needsRehash(""));
+    }
+
+    @Test
+    public void newHashesCheckAndNeedNoRehash() throws Exception {
+        String hash = hasher.hash("secret").get();
+        assertFalse(hasher.needsRehash(hash));
+        assertTrue(hasher.check("secret", hash).get());
+        assertFalse(hasher.check("wrong", hash).get());
+    }
+}
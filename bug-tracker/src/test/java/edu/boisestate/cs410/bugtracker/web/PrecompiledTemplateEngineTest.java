@@ -0,0 +1,47 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import com.mitchellbosecke.pebble.loader.ClasspathLoader;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PrecompiledTemplateEngineTest {
+    private final List<String> names = PrecompiledTemplateEngine.findTemplates("index.html");
+
+    @Test
+    public void findsThePageTemplates() {
+        assertTrue(names.contains("index.html"));
+        assertTrue(names.contains("buglist.html"));
+    }
+
+    @Test
+    public void knownViewsPass() {
+        PrecompiledTemplateEngine engine = new PrecompiledTemplateEngine(new ClasspathLoader(), 64, true);
+        engine.precompile(names);
+        engine.checkViews(Arrays.asList("index.html", "bugInfo.html"));
+        assertEquals(names.size(), engine.getCachedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void misspeltViewFails() {
+        PrecompiledTemplateEngine engine = new PrecompiledTemplateEngine(new ClasspathLoader(), 64, false);
+        engine.precompile(names);
+        engine.checkViews(Arrays.asList("index.html", "buglsit.html"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void strictModeFailsWhenTheCacheIsTooSmall() {
+        new PrecompiledTemplateEngine(new ClasspathLoader(), 2, true).precompile(names);
+    }
+
+    @Test
+    public void lenientModeChecksViewsPastTheCache() {
+        PrecompiledTemplateEngine engine = new PrecompiledTemplateEngine(new ClasspathLoader(), 2, false);
+        engine.precompile(names);
+        assertEquals(2, engine.getCachedCount());
+        engine.checkViews(Arrays.asList("milestonelist.html"));
+    }
+}
@@ -0,0 +1,55 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SettingsTest {
+    @Test
+    public void readsOptionsAndArguments() throws IOException {
+        Settings settings = Settings.parse(new String[]{"--pool.maxTotal=32", "--gzip", "postgresql://localhost/db"});
+        assertEquals(32, settings.getInt("pool.maxTotal", 16));
+        assertTrue(settings.getBoolean("gzip", false));
+        assertEquals(Collections.singletonList("postgresql://localhost/db"), settings.getArguments());
+    }
+
+    @Test
+    public void missingKeysUseTheDefault() throws IOException {
+        Settings settings = Settings.parse(new String[0]);
+        assertEquals(7, settings.getInt("settings.test.missing", 7));
+        assertEquals(7L, settings.getLong("settings.test.missing", 7L));
+        assertEquals("x", settings.getString("settings.test.missing", "x"));
+        assertFalse(settings.getBoolean("settings.test.missing", false));
+    }
+
+    @Test
+    public void valuesAreTrimmed() throws IOException {
+        Settings settings = Settings.parse(new String[]{"--n= 12 "});
+        assertEquals(12, settings.getInt("n", 0));
+        assertEquals(12L, settings.getLong("n", 0));
+    }
+
+    @Test
+    public void commandLineOverridesTheConfigFile() throws IOException {
+        Path config = Files.createTempFile("bugtracker", ".properties");
+        try {
+            Files.write(config, "a=1\nb=2\n".getBytes(StandardCharsets.ISO_8859_1));
+            Settings settings = Settings.parse(new String[]{"--config=" + config, "--b=3"});
+            assertEquals(1, settings.getInt("a", 0));
+            assertEquals(3, settings.getInt("b", 0));
+        } finally {
+            Files.delete(config);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void malformedNumbersFail() throws IOException {
+        Settings.parse(new String[]{"--n=lots"}).getInt("n", 0);
+    }
+}
@@ -0,0 +1,148 @@
+package edu.boisestate.cs410.bugtracker.web;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TagLoaderTest {
+    private final FakeDatabase db = new FakeDatabase();
+    private final TagDictionary dictionary = new TagDictionary();
+
+    @Test
+    public void loadsEveryBugInOneQuery() throws SQLException {
+        dictionary.put(1, "ui");
+        dictionary.put(2, "crash");
+        db.rows(Queries.TAGS_FOR_BUGS, new Object[]{10, 1}, new Object[]{10, 2}, new Object[]{12, 1});
+
+        Map<Integer, List<String>> tags = TagLoader.loadTags(db.connection(), dictionary, Arrays.asList(10, 11, 12));
+
+        assertEquals(Collections.singletonList(Queries.TAGS_FOR_BUGS), db.queries);
+        assertEquals(Collections.singletonList(Arrays.asList(10, 11, 12)), db.boundArrays);
+        assertEquals(Arrays.asList("crash", "ui"), tags.get(10));
+        assertEquals(Collections.emptyList(), tags.get(11));
+        assertEquals(Collections.singletonList("ui"), tags.get(12));
+        assertEquals(3, tags.size());
+        assertEquals(db.createdArrays, db.freedArrays);
+    }
+
+    @Test
+    public void looksUpUnknownTagNamesOnce() throws SQLException {
+        dictionary.put(1, "ui");
+        db.rows(Queries.TAGS_FOR_BUGS, new Object[]{10, 1}, new Object[]{10, 5}, new Object[]{11, 5});
+        db.rows(Queries.TAG_NAMES_BY_ID, new Object[]{5, "perf"});
+
+        Map<Integer, List<String>> tags = TagLoader.loadTags(db.connection(), dictionary, Arrays.asList(10, 11));
+
+        assertEquals(Arrays.asList(Queries.TAGS_FOR_BUGS, Queries.TAG_NAMES_BY_ID), db.queries);
+        assertEquals(Collections.singletonList(5), db.boundArrays.get(1));
+        assertEquals(Arrays.asList("perf", "ui"), tags.get(10));
+        assertEquals(Collections.singletonList("perf"), tags.get(11));
+        assertEquals("perf", dictionary.getName(5));
+        assertEquals(db.createdArrays, db.freedArrays);
+    }
+
+    @Test
+    public void noBugsNeedNoQuery() throws SQLException {
+        assertTrue(TagLoader.loadTags(db.connection(), dictionary, Collections.emptyList()).isEmpty());
+        assertTrue(db.queries.isEmpty());
+    }
+
+    @Test
+    public void joinsTagsForDisplay() {
+        assertEquals("crash ui ", TagLoader.joinTags(Arrays.asList("crash", "ui")));
+        assertEquals("", TagLoader.joinTags(Collections.emptyList()));
+    }
+
+    /**
+     * Just enough JDBC to answer canned rows per query and record what was asked.
+     */
+    private static class FakeDatabase {
+        final Map<String, List<Object[]>> results = new HashMap<>();
+        final List<String> queries = new ArrayList<>();
+        final List<List<Object>> boundArrays = new ArrayList<>();
+        int createdArrays;
+        int freedArrays;
+
+        void rows(String sql, Object[]... rows) {
+            results.put(sql, Arrays.asList(rows));
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                switch (method) {
+                case "createArrayOf":
+                    return array((Object[]) args[1]);
+                case "prepareStatement":
+                    return statement((String) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private Array array(Object[] elements) {
+            createdArrays++;
+            return proxy(Array.class, (method, args) -> {
+                if (method.equals("free")) {
+                    freedArrays++;
+                    return null;
+                } else if (method.equals("getArray")) {
+                    return elements;
+                }
+                throw new UnsupportedOperationException(method);
+            });
+        }
+
+        private PreparedStatement statement(String sql) {
+            return proxy(PreparedStatement.class, (method, args) -> {
+                switch (method) {
+                case "setArray":
+                    boundArrays.add(Arrays.asList((Object[]) ((Array) args[1]).getArray()));
+                    return null;
+                case "executeQuery":
+                    queries.add(sql);
+                    return resultSet(results.getOrDefault(sql, Collections.emptyList()));
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private ResultSet resultSet(List<Object[]> rows) {
+            int[] row = {-1};
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                case "next":
+                    return ++row[0] < rows.size();
+                case "getInt":
+                    return rows.get(row[0])[(Integer) args[0] - 1];
+                case "getString":
+                    return rows.get(row[0])[(Integer) args[0] - 1];
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                                                    (p, method, args) -> handler.invoke(method.getName(), args)));
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+}